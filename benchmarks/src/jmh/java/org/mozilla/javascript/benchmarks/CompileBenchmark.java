@@ -0,0 +1,70 @@
+package org.mozilla.javascript.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Context.EvaluationMethod;
+import org.mozilla.javascript.Script;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures how long it takes to compile a large amount of library code, most of which is never
+ * called, with function bodies compiled eagerly or on first call.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CompileBenchmark {
+    private static final String[] SOURCES = {
+        "base.js",
+        "crypto.js",
+        "deltablue.js",
+        "earley-boyer.js",
+        "raytrace.js",
+        "regexp.js",
+        "richards.js",
+        "splay.js"
+    };
+
+    @State(Scope.Thread)
+    public static class CompileState {
+        Context cx;
+        String source;
+
+        @Param({"Interpreter", "Compiler"})
+        public EvaluationMethod evalMethod;
+
+        @Param({"false", "true"})
+        public boolean lazyFunctionBodies;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            for (String name : SOURCES) {
+                Path p = Path.of("testsrc/benchmarks/v8-benchmarks-v6", name);
+                sb.append(Files.readString(p, StandardCharsets.UTF_8)).append('\n');
+            }
+            source = sb.toString();
+            cx = Context.enter();
+            cx.setEvaluationMethod(evalMethod);
+            cx.setLanguageVersion(Context.VERSION_ES6);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            Context.exit();
+        }
+    }
+
+    @Benchmark
+    public Script compileV8Benchmarks(CompileState state) throws IOException {
+        return state.cx.compileReader(
+                new StringReader(state.source),
+                "v8-benchmarks.js",
+                1,
+                null,
+                env -> env.setLazyFunctionBodies(state.lazyFunctionBodies));
+    }
+}
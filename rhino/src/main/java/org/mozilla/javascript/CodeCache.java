@@ -0,0 +1,264 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+// API class
+
+package org.mozilla.javascript;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * A cache of compiled scripts kept in a directory, so that a script that was compiled to bytecode
+ * or interpreter code by an earlier run of the JVM can be loaded without being parsed and compiled
+ * again. See {@link ContextFactory#initCodeCache(CodeCache)}.
+ *
+ * <p>Only scripts and functions that are compiled with {@link Context.EvaluationMethod#Compiler}
+ * or {@link Context.EvaluationMethod#Interpreter}, without a debugger, source mapper or explicit
+ * evaluator, are cached. Each entry is keyed by a
+ * hash of the source, its name and line number, the compiler options and the Rhino version, so a
+ * change to any of them simply misses. Warnings are only reported when a script is compiled, not
+ * when it is loaded from the cache.
+ *
+ * <p>Entries are written to a temporary file and then renamed, so several JVMs can share a
+ * directory and readers never see a partly written entry. An entry that can't be read, for
+ * example because it was truncated or was written by something else, counts as corrupt: it is
+ * deleted and the script is compiled and written again.
+ *
+ * <p>Loading a compiled entry defines classes from the bytes in it, and loading an interpreted one
+ * runs the code in it, so the directory must be as trusted as the code that uses the cache.
+ */
+public final class CodeCache {
+    private static final int MAGIC = 0x52484343; // "RHCC"
+    // Change this whenever the format written by an evaluator changes
+    private static final int FORMAT_VERSION = 2;
+    private static final String SUFFIX = ".rcc";
+
+    private final Path directory;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder corruptCount = new LongAdder();
+    private final LongAdder writeFailureCount = new LongAdder();
+
+    /**
+     * Create a cache that keeps its entries in the directory. The directory is created when the
+     * first entry is written, if it does not exist yet.
+     */
+    public CodeCache(Path directory) {
+        if (directory == null) throw new IllegalArgumentException("directory is null");
+        this.directory = directory;
+    }
+
+    /** Return the directory that the entries are kept in. */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /** Return the number of scripts that were loaded from the cache. */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /** Return the number of scripts that were looked up but had to be compiled. */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /** Return the number of entries that could not be read and were thrown away. */
+    public long getCorruptCount() {
+        return corruptCount.sum();
+    }
+
+    /** Return the number of compiled scripts that could not be written to the cache. */
+    public long getWriteFailureCount() {
+        return writeFailureCount.sum();
+    }
+
+    /** Return the key of the entry for a script compiled with the given options. */
+    String getKey(
+            String source,
+            String sourceName,
+            int lineno,
+            boolean returnFunction,
+            CompilerEnvirons compilerEnv) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(String.valueOf(ImplementationVersion.get()));
+            out.writeUTF(sourceName);
+            out.writeInt(lineno);
+            out.writeBoolean(returnFunction);
+            out.writeInt(compilerEnv.getLanguageVersion());
+            out.writeInt(compilerEnv.getOptimizationLevel());
+            out.writeBoolean(compilerEnv.isGenerateDebugInfo());
+            out.writeBoolean(compilerEnv.isReservedKeywordAsIdentifier());
+            out.writeBoolean(compilerEnv.isAllowMemberExprAsFunctionName());
+            out.writeBoolean(compilerEnv.isXmlAvailable());
+            out.writeBoolean(compilerEnv.isGeneratingSource());
+            out.writeBoolean(compilerEnv.isStrictMode());
+            out.writeBoolean(compilerEnv.isGenerateObserverCount());
+            out.writeBoolean(compilerEnv.isGenerateLoopEntries());
+            out.writeInt(compilerEnv.getInlineThreshold());
+            out.writeBoolean(compilerEnv.isLazyFunctionBodies());
+            out.writeBoolean(compilerEnv.getAllowSharpComments());
+            out.writeBoolean(compilerEnv.isAllowSuper());
+            if (compilerEnv.getActivationNames() != null) {
+                for (String name : new TreeSet<>(compilerEnv.getActivationNames())) {
+                    out.writeUTF(name);
+                }
+            }
+            out.flush();
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(bytes.toByteArray());
+            digest.update(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16));
+                key.append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Load the entry with the key, or return null if there is no usable entry and the script has to
+     * be compiled.
+     */
+    <T extends ScriptOrFn<T>> CompilationResult<T> load(
+            String key, Evaluator evaluator, CompilerEnvirons compilerEnv, String source) {
+        Path file = directory.resolve(key + SUFFIX);
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file);
+        } catch (IOException e) {
+            // Most likely there is no entry yet
+            missCount.increment();
+            return null;
+        }
+
+        CompilationResult<T> result;
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            if (in.readInt() != MAGIC
+                    || in.readInt() != FORMAT_VERSION
+                    || !key.equals(in.readUTF())) {
+                throw new IOException("Not a cache entry for " + key);
+            }
+            long checksum = in.readLong();
+            int length = in.readInt();
+            if (length < 0 || length > in.available()) {
+                throw new IOException("Truncated cache entry " + key);
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (crc.getValue() != checksum || in.available() != 0) {
+                throw new IOException("Bad checksum for " + key);
+            }
+            result =
+                    evaluator.readCompilationResult(
+                            new DataInputStream(new ByteArrayInputStream(payload)),
+                            compilerEnv,
+                            source);
+        } catch (IOException | RuntimeException e) {
+            corruptCount.increment();
+            missCount.increment();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // Another writer will replace it
+            }
+            return null;
+        }
+        hitCount.increment();
+        return result;
+    }
+
+    /**
+     * Write the compiled script as the entry with the key. Failures are counted rather than
+     * thrown, since the script has been compiled anyway.
+     */
+    void store(String key, Evaluator evaluator, CompilationResult<?> result) {
+        Path temp = null;
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(4096);
+            DataOutputStream payloadOut = new DataOutputStream(payload);
+            if (!evaluator.writeCompilationResult(result, payloadOut)) {
+                return;
+            }
+            payloadOut.flush();
+            byte[] payloadBytes = payload.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(payloadBytes);
+
+            ByteArrayOutputStream entry = new ByteArrayOutputStream(payloadBytes.length + 100);
+            DataOutputStream out = new DataOutputStream(entry);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(key);
+            out.writeLong(crc.getValue());
+            out.writeInt(payloadBytes.length);
+            out.write(payloadBytes);
+            out.flush();
+
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temp, entry.toByteArray());
+            Path file = directory.resolve(key + SUFFIX);
+            try {
+                Files.move(
+                        temp,
+                        file,
+                        StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+        } catch (IOException | RuntimeException e) {
+            writeFailureCount.increment();
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Nothing more can be done
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CodeCache{directory="
+                + directory
+                + ", hits="
+                + getHitCount()
+                + ", misses="
+                + getMissCount()
+                + ", corrupt="
+                + getCorruptCount()
+                + ", writeFailures="
+                + getWriteFailureCount()
+                + '}';
+    }
+}
@@ -1,12 +1,11 @@
 package org.mozilla.javascript;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
-import org.mozilla.javascript.ast.AstNode;
-import org.mozilla.javascript.ast.AstRoot;
-import org.mozilla.javascript.ast.Block;
 import org.mozilla.javascript.ast.FunctionNode;
-import org.mozilla.javascript.ast.Scope;
+import org.mozilla.javascript.ast.Jump;
 import org.mozilla.javascript.ast.ScriptNode;
 
 /**
@@ -20,10 +19,7 @@ public class CodeGenUtils {
             JSDescriptor.Builder<JSFunction> builder,
             JSDescriptor.Builder<?> parent,
             FunctionNode fn) {
-        final AstNode fnParent = fn.getParent();
-        if (!(fnParent instanceof AstRoot
-                || fnParent instanceof Scope
-                || fnParent instanceof Block)) {
+        if (!fn.isDeclaredInBlock()) {
             builder.declaredAsFunctionExpression = true;
             boolean isArrow = fn.getFunctionType() == FunctionNode.ARROW_FUNCTION;
             builder.hasLexicalThis = isArrow;
@@ -134,6 +130,56 @@ public class CodeGenUtils {
         }
     }
 
+    /**
+     * Find the loops in a transformed script that code may jump into part way through, and return
+     * the target at the start of the body of each one, in the order they appear in the script.
+     * These are the loops that are only nested in blocks, labels and other such loops, so when one
+     * of them starts a new iteration nothing is left on the stack and no scope or exception handler
+     * has been entered. The interpreter and the compiler both use this list, so the index of a loop
+     * in it is the same in the code they generate for the same script.
+     */
+    public static List<Node> findLoopEntries(ScriptNode script) {
+        List<Node> entries = new ArrayList<>();
+        findLoopEntries_r(script, entries);
+        return entries;
+    }
+
+    private static void findLoopEntries_r(Node parent, List<Node> entries) {
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNext()) {
+            switch (child.getType()) {
+                case Token.LOOP:
+                    Node bodyTarget = getLoopBodyTarget(child);
+                    if (bodyTarget != null) {
+                        entries.add(bodyTarget);
+                    }
+                    findLoopEntries_r(child, entries);
+                    break;
+                case Token.BLOCK:
+                case Token.LABEL:
+                    findLoopEntries_r(child, entries);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * The body of a loop starts with a target, and the condition at the end of the loop jumps back
+     * to it.
+     */
+    private static Node getLoopBodyTarget(Node loop) {
+        Node bodyTarget = null;
+        for (Node child = loop.getFirstChild(); child != null; child = child.getNext()) {
+            if (child.getType() == Token.TARGET && bodyTarget == null) {
+                bodyTarget = child;
+            } else if (child.getType() == Token.IFEQ) {
+                return ((Jump) child).target == bodyTarget ? bodyTarget : null;
+            }
+        }
+        return null;
+    }
+
     /**
      * Disambiguate all variable names after the parameters. We avoid disambiguating the parameters
      * themselves because those names can be repeated and are not unique even if an activation frame
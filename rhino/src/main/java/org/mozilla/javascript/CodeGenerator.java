@@ -34,6 +34,8 @@ class CodeGenerator<T extends ScriptOrFn<T>> {
     private JSDescriptor.Builder<T> builder;
 
     private ScriptNode scriptOrFn;
+    // Shared by the functions whose bodies are compiled when they are first called
+    private LazyFunctionCode.Origin lazyOrigin;
     private int iCodeTop;
     private int stackDepth;
     private int lineNumber = -1;
@@ -55,7 +57,7 @@ class CodeGenerator<T extends ScriptOrFn<T>> {
     // ECF_ or Expression Context Flags constants: for now only TAIL
     private static final int ECF_TAIL = 1 << 0;
 
-    public JSDescriptor<T> compile(
+    public JSDescriptor.Builder<T> compile(
             CompilerEnvirons compilerEnv,
             ScriptNode tree,
             String rawSource,
@@ -83,6 +85,9 @@ class CodeGenerator<T extends ScriptOrFn<T>> {
         builder = new JSDescriptor.Builder<T>();
         itsData = new InterpreterData.Builder<T>();
         builder.code = itsData;
+        if (compilerEnv.isLazyFunctionBodies()) {
+            lazyOrigin = new LazyFunctionCode.Origin(rawSource, compilerEnv);
+        }
 
         if (returnFunction) {
             CodeGenUtils.fillInForTopLevelFunction(
@@ -92,8 +97,11 @@ class CodeGenerator<T extends ScriptOrFn<T>> {
             CodeGenUtils.fillInForScript(builder, scriptOrFn, rawSource, compilerEnv);
             CodeGenUtils.setConstructor(builder, scriptOrFn);
             generateICodeFromTree(scriptOrFn);
+            if (compilerEnv.isGenerateLoopEntries()) {
+                recordLoopEntries();
+            }
         }
-        return builder.build(x -> {});
+        return builder;
     }
 
     private void generateFunctionICode() {
@@ -137,6 +145,19 @@ class CodeGenerator<T extends ScriptOrFn<T>> {
         generateICodeFromTree(theFunction.getLastChild());
     }
 
+    private void recordLoopEntries() {
+        List<Node> entries = CodeGenUtils.findLoopEntries(scriptOrFn);
+        if (entries.isEmpty()) {
+            return;
+        }
+        int[] pcs = new int[entries.size()];
+        for (int i = 0; i < pcs.length; i++) {
+            int label = entries.get(i).labelId();
+            pcs[i] = label == -1 ? -1 : labelTable[label];
+        }
+        itsData.loopEntries = pcs;
+    }
+
     private void generateICodeFromTree(Node tree) {
         generateNestedFunctions();
 
@@ -211,8 +232,15 @@ class CodeGenerator<T extends ScriptOrFn<T>> {
 
         for (int i = 0; i != functionCount; i++) {
             FunctionNode fn = scriptOrFn.getFunctionNode(i);
+            if (fn.isLazy()) {
+                JSDescriptor.Builder<JSFunction> fb = builder.createChildBuilder();
+                fb.code = new LazyFunctionCode.Builder(lazyOrigin, fn);
+                CodeGenUtils.fillInForNestedFunction(fb, builder, fn);
+                continue;
+            }
             CodeGenerator<JSFunction> gen = new CodeGenerator<JSFunction>();
             gen.compilerEnv = compilerEnv;
+            gen.lazyOrigin = lazyOrigin;
             gen.scriptOrFn = fn;
             gen.builder = builder.createChildBuilder();
             gen.itsData = new InterpreterData.Builder<JSFunction>();
@@ -229,12 +257,16 @@ class CodeGenerator<T extends ScriptOrFn<T>> {
         Context cx = Context.getContext();
         RegExpProxy rep = ScriptRuntime.checkRegExpProxy(cx);
         Object[] array = new Object[N];
+        String[] sources = new String[N * 2];
         for (int i = 0; i != N; i++) {
             String string = scriptOrFn.getRegexpString(i);
             String flags = scriptOrFn.getRegexpFlags(i);
             array[i] = rep.compileRegExp(cx, string, flags);
+            sources[2 * i] = string;
+            sources[2 * i + 1] = flags;
         }
         itsData.itsRegExpLiterals = array;
+        itsData.itsRegExpSources = sources;
     }
 
     private void generateTemplateLiterals() {
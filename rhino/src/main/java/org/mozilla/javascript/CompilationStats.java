@@ -0,0 +1,103 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+// API class
+
+package org.mozilla.javascript;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters that describe the work done by the compiler and by tiered execution for the contexts of
+ * one {@link ContextFactory}. See {@link ContextFactory#getCompilationStats()}. All the counters are updated
+ * while scripts run, so a set of values read one after another is not necessarily consistent.
+ */
+public final class CompilationStats {
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final LongAdder compileCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private final LongAdder compileNanos = new LongAdder();
+    private final LongAdder installCount = new LongAdder();
+    private final LongAdder interpreterFallbackCount = new LongAdder();
+
+    CompilationStats() {}
+
+    /**
+     * Return the number of compilation jobs that have been submitted to the compilation executor
+     * but have not started to run yet.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /** Return the number of scripts that have been compiled to bytecode, successfully or not. */
+    public long getCompileCount() {
+        return compileCount.sum();
+    }
+
+    /** Return the number of scripts that could not be compiled, and so stay interpreted. */
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+
+    /** Return the total time spent compiling scripts, in nanoseconds. */
+    public long getCompileTimeNanos() {
+        return compileNanos.sum();
+    }
+
+    /** Return the number of functions whose interpreted code has been replaced. */
+    public long getInstallCount() {
+        return installCount.sum();
+    }
+
+    /**
+     * Return the number of scripts and functions that were meant to be compiled to bytecode but
+     * are interpreted instead, because their code did not fit in the limits of a class file.
+     */
+    public long getInterpreterFallbackCount() {
+        return interpreterFallbackCount.sum();
+    }
+
+    void queued() {
+        queueDepth.incrementAndGet();
+    }
+
+    void dequeued() {
+        queueDepth.decrementAndGet();
+    }
+
+    void compiled(long nanos, boolean succeeded) {
+        compileCount.increment();
+        compileNanos.add(nanos);
+        if (!succeeded) {
+            failureCount.increment();
+        }
+    }
+
+    void installed() {
+        installCount.increment();
+    }
+
+    void fellBackToInterpreter() {
+        interpreterFallbackCount.increment();
+    }
+
+    @Override
+    public String toString() {
+        return "CompilationStats{queueDepth="
+                + getQueueDepth()
+                + ", compiled="
+                + getCompileCount()
+                + ", failed="
+                + getFailureCount()
+                + ", compileTimeNanos="
+                + getCompileTimeNanos()
+                + ", installed="
+                + getInstallCount()
+                + ", interpreterFallbacks="
+                + getInterpreterFallbackCount()
+                + '}';
+    }
+}
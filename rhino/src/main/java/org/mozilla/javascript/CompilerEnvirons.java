@@ -9,9 +9,15 @@ package org.mozilla.javascript;
 import java.util.Set;
 import org.mozilla.javascript.Context.EvaluationMethod;
 import org.mozilla.javascript.ast.ErrorCollector;
+import org.mozilla.javascript.config.RhinoConfig;
 import org.mozilla.javascript.sourcemap.SourceMapper;
 
 public class CompilerEnvirons {
+    private static final int DEFAULT_INLINE_THRESHOLD =
+            RhinoConfig.get("rhino.optimizer.inlineThreshold", 16);
+    private static final boolean DEFAULT_LAZY_FUNCTION_BODIES =
+            RhinoConfig.get("rhino.lazyFunctionBodies", false);
+
     public CompilerEnvirons() {
         errorReporter = DefaultErrorReporter.instance;
         languageVersion = Context.VERSION_ES6;
@@ -25,6 +31,39 @@ public class CompilerEnvirons {
         warningAsError = false;
         generateObserverCount = false;
         allowSharpComments = false;
+        inlineThreshold = DEFAULT_INLINE_THRESHOLD;
+        lazyFunctionBodies = DEFAULT_LAZY_FUNCTION_BODIES;
+    }
+
+    /** Create a copy of another environment, with all the same settings. */
+    CompilerEnvirons(CompilerEnvirons other) {
+        errorReporter = other.errorReporter;
+        languageVersion = other.languageVersion;
+        generateDebugInfo = other.generateDebugInfo;
+        reservedKeywordAsIdentifier = other.reservedKeywordAsIdentifier;
+        allowMemberExprAsFunctionName = other.allowMemberExprAsFunctionName;
+        xmlAvailable = other.xmlAvailable;
+        evaluationMethod = other.evaluationMethod;
+        generatingSource = other.generatingSource;
+        strictMode = other.strictMode;
+        warningAsError = other.warningAsError;
+        generateObserverCount = other.generateObserverCount;
+        generateLoopEntries = other.generateLoopEntries;
+        inlineThreshold = other.inlineThreshold;
+        lazyFunctionBodies = other.lazyFunctionBodies;
+        recordingComments = other.recordingComments;
+        recordingLocalJsDocComments = other.recordingLocalJsDocComments;
+        recoverFromErrors = other.recoverFromErrors;
+        warnTrailingComma = other.warnTrailingComma;
+        ideMode = other.ideMode;
+        allowSharpComments = other.allowSharpComments;
+        allowSuper = other.allowSuper;
+        activationNames = other.activationNames;
+        inEval = other.inEval;
+        homeObjecgt = other.homeObjecgt;
+        securityController = other.securityController;
+        securityDomain = other.securityDomain;
+        sourceMapper = other.sourceMapper;
     }
 
     public void initFromContext(Context cx) {
@@ -122,6 +161,10 @@ public class CompilerEnvirons {
         this.evaluationMethod = EvaluationMethod.forLevel(level);
     }
 
+    public EvaluationMethod getEvaluationMethod() {
+        return evaluationMethod;
+    }
+
     public void setEvaluationMethod(EvaluationMethod method) {
         this.evaluationMethod = method;
     }
@@ -155,6 +198,10 @@ public class CompilerEnvirons {
         return warningAsError;
     }
 
+    void setReportWarningAsError(boolean warningAsError) {
+        this.warningAsError = warningAsError;
+    }
+
     /**
      * Specify whether or not source information should be generated.
      *
@@ -187,6 +234,81 @@ public class CompilerEnvirons {
         this.generateObserverCount = generateObserverCount;
     }
 
+    /**
+     * @return true iff code will be generated so that a script that started running in the
+     *     interpreter can carry on in compiled code from the start of one of its loops
+     */
+    public boolean isGenerateLoopEntries() {
+        return generateLoopEntries;
+    }
+
+    /**
+     * Turn on or off generation of loop entries. When this is on the interpreter records where
+     * each of the loops at the top level of a script starts, and the compiler generates a second
+     * entry point for the script that can jump straight to any of them. Tiered execution uses this
+     * to move a long running loop to compiled code without waiting for the script to finish.
+     *
+     * @param generateLoopEntries if true, generated code will contain loop entries.
+     */
+    public void setGenerateLoopEntries(boolean generateLoopEntries) {
+        this.generateLoopEntries = generateLoopEntries;
+    }
+
+    /**
+     * @return the size, in tree nodes, of the largest function that the compiler will inline at
+     *     its call sites
+     */
+    public int getInlineThreshold() {
+        return inlineThreshold;
+    }
+
+    /**
+     * Set the size of the largest function that the compiler may inline. A function can only be
+     * inlined if its body is a single return statement whose expression does not call anything or
+     * refer to anything but its parameters, and the size is the number of nodes in the tree of that
+     * expression. Calls to such a function are compiled to a check that the name still refers to
+     * the same function, followed by the expression itself. The default is 16, or the value of the
+     * {@code rhino.optimizer.inlineThreshold} configuration property. Only affects JVM byte code
+     * generation.
+     *
+     * @param inlineThreshold the largest size of function to inline, or 0 to turn inlining off
+     */
+    public void setInlineThreshold(int inlineThreshold) {
+        this.inlineThreshold = inlineThreshold;
+    }
+
+    /**
+     * @return true iff the bodies of nested functions are only compiled when the function is first
+     *     called
+     */
+    public boolean isLazyFunctionBodies() {
+        return lazyFunctionBodies;
+    }
+
+    /**
+     * Turn on or off lazy compilation of function bodies. When this is on the whole script is still
+     * parsed, so syntax errors are reported as usual, but the body of a nested function is not
+     * turned into code until the function is first called. It is then parsed again from the source
+     * and compiled by itself. This saves most of the work of compiling a large script of which only
+     * a few functions are ever called, at the cost of parsing the functions that are called twice.
+     *
+     * <p>Functions that are likely to be called at once, such as a function expression in
+     * parentheses, are compiled with the script, as are generators, methods and arrow functions. A
+     * few errors that are only found when the tree is transformed, such as an invalid left hand
+     * side of an assignment, are reported when the function is first called rather than when the
+     * script is compiled. A function that is compiled lazily can't be the target of a direct call
+     * or be inlined by the compiler. Functions created by {@code eval} or the {@code Function}
+     * constructor, and scripts compiled with a debugger or a source mapper, are always compiled
+     * completely. The default is off, or the value of the {@code rhino.lazyFunctionBodies}
+     * configuration property.
+     *
+     * @param lazyFunctionBodies if true, function bodies will be compiled when they are first
+     *     called.
+     */
+    public void setLazyFunctionBodies(boolean lazyFunctionBodies) {
+        this.lazyFunctionBodies = lazyFunctionBodies;
+    }
+
     public boolean isRecordingComments() {
         return recordingComments;
     }
@@ -320,6 +442,9 @@ public class CompilerEnvirons {
     private boolean strictMode;
     private boolean warningAsError;
     private boolean generateObserverCount;
+    private boolean generateLoopEntries;
+    private int inlineThreshold;
+    private boolean lazyFunctionBodies;
     private boolean recordingComments;
     private boolean recordingLocalJsDocComments;
     private boolean recoverFromErrors;
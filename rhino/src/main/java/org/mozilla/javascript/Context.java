@@ -15,6 +15,7 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
@@ -352,6 +353,19 @@ public class Context implements Closeable {
      */
     public static final int FEATURE_INTL_402 = 22;
 
+    /**
+     * If set, then new objects store their named properties using shared {@link Shape}s, so that
+     * objects which add the same properties in the same order share a single property layout
+     * instead of each having a hash table of their own. This greatly reduces the memory used by
+     * large numbers of similar objects. Objects fall back to the regular property map if they
+     * delete properties, use integer indices, or grow very large. This feature has no effect when
+     * {@link #FEATURE_THREAD_SAFE_OBJECTS} is set. The default is false, unless the
+     * "rhino.useShapedObjectsByDefault" configuration property is set.
+     *
+     * @since 2.0.0
+     */
+    public static final int FEATURE_SHAPED_OBJECTS = 23;
+
     public static final String languageVersionProperty = "language version";
     public static final String errorReporterProperty = "error reporter";
 
@@ -1265,13 +1279,18 @@ public class Context implements Closeable {
     public final Object evaluateReader(
             VarScope scope, Reader in, String sourceName, int lineno, Object securityDomain)
             throws IOException {
-        return evaluateScript(
-                ScriptCompileSpec.fromReader(in)
-                        .sourceName(sourceName)
-                        .lineno(lineno)
-                        .securityDomain(securityDomain)
-                        .build(),
-                scope);
+        Script script =
+                compileFromReader(
+                        ScriptCompileSpec.fromReader(in)
+                                .sourceName(sourceName)
+                                .lineno(lineno)
+                                .securityDomain(securityDomain)
+                                .build());
+        if (script != null) {
+            return script.exec(
+                    this, scope, ScriptableObject.getTopLevelScope(scope).getGlobalThis());
+        }
+        return null;
     }
 
     /**
@@ -1469,7 +1488,7 @@ public class Context implements Closeable {
             Object securityDomain,
             Consumer<CompilerEnvirons> compilerEnvironsProcessor)
             throws IOException {
-        return compileScript(
+        return compileFromReader(
                 ScriptCompileSpec.fromReader(in)
                         .sourceName(sourceName)
                         .lineno(lineno)
@@ -1478,6 +1497,15 @@ public class Context implements Closeable {
                         .build());
     }
 
+    /** Compile a spec made from a reader, reporting errors from the reader as they were. */
+    private Script compileFromReader(ScriptCompileSpec spec) throws IOException {
+        try {
+            return compileScript(spec);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     /**
      * Compiles the source in the given string.
      *
@@ -2059,7 +2087,7 @@ public class Context implements Closeable {
      * Set the current optimization level.
      *
      * <p>The optimization level determines which execution method Rhino uses: -2 for InterpreterV2,
-     * -1 for the original Interpreter, and 0-9 for compiled mode.
+     * -1 for the original Interpreter, 0 for tiered execution, and 9 for compiled mode.
      *
      * @param optimizationLevel an integer indicating the level of optimization to perform
      * @since 1.3
@@ -2651,9 +2679,12 @@ public class Context implements Closeable {
     }
 
     protected Script compileScriptImpl(ScriptCompileSpec spec) {
+        Reader sourceReader = spec.takeSourceReader();
         Compiled<JSScript> compiled =
                 compileImpl(
-                        spec.getSource(),
+                        null,
+                        sourceReader == null ? spec.getSource() : null,
+                        sourceReader,
                         spec.getSourceName(),
                         spec.getLineno(),
                         spec.getSecurityDomain(),
@@ -2663,13 +2694,20 @@ public class Context implements Closeable {
                         spec.getSourceMapper(),
                         false,
                         Evaluator::compileScript);
-        return compiled.evaluator.createScriptObject(compiled.result, spec.getSecurityDomain());
+        Script script =
+                compiled.evaluator.createScriptObject(compiled.result, spec.getSecurityDomain());
+        if (compiled.tiering != null && script instanceof JSScript) {
+            compiled.tiering.attach(((JSScript) script).getDescriptor());
+        }
+        return script;
     }
 
     protected Function compileFunctionImpl(FunctionCompileSpec spec) {
         Compiled<JSFunction> compiled =
                 compileImpl(
+                        spec.getScope(),
                         spec.getSource(),
+                        null,
                         spec.getSourceName(),
                         spec.getLineno(),
                         spec.getSecurityDomain(),
@@ -2679,8 +2717,13 @@ public class Context implements Closeable {
                         spec.getSourceMapper(),
                         true,
                         Evaluator::compileFunction);
-        return compiled.evaluator.createFunctionObject(
-                this, spec.getScope(), compiled.result, spec.getSecurityDomain());
+        Function fn =
+                compiled.evaluator.createFunctionObject(
+                        this, spec.getScope(), compiled.result, spec.getSecurityDomain());
+        if (compiled.tiering != null && fn instanceof JSFunction) {
+            compiled.tiering.attach(((JSFunction) fn).getDescriptor());
+        }
+        return fn;
     }
 
     @FunctionalInterface
@@ -2692,15 +2735,19 @@ public class Context implements Closeable {
     private static final class Compiled<T extends ScriptOrFn<T>> {
         private final Evaluator evaluator;
         private final CompilationResult<T> result;
+        private final TieredCompiler tiering;
 
-        private Compiled(Evaluator evaluator, CompilationResult<T> result) {
+        private Compiled(Evaluator evaluator, CompilationResult<T> result, TieredCompiler tiering) {
             this.evaluator = evaluator;
             this.result = result;
+            this.tiering = tiering;
         }
     }
 
     private <T extends ScriptOrFn<T>> Compiled<T> compileImpl(
+            VarScope scope,
             String sourceString,
+            Reader sourceReader,
             String sourceName,
             int lineno,
             Object securityDomain,
@@ -2734,9 +2781,37 @@ public class Context implements Closeable {
             compilerEnvironProcessor.accept(compilerEnv);
         }
 
+        CodeCache codeCache = getFactory().getCodeCache();
+        if (sourceReader != null && !canParseFromReader(compiler, compilerEnv, codeCache)) {
+            try {
+                sourceString = Kit.readReader(sourceReader);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            sourceReader = null;
+        }
+        String cacheKey = null;
+        if (codeCache != null
+                && compiler == null
+                && debugger == null
+                && sourceMapper == null
+                && !compilerEnv.isInEval()
+                && evaluationMethod != EvaluationMethod.Tiered
+                && compilerEnv.isInterpretedMode() == evaluationMethod.isInterpreted()) {
+            cacheKey =
+                    codeCache.getKey(sourceString, sourceName, lineno, returnFunction, compilerEnv);
+            Evaluator cacheCompiler = createCompiler();
+            CompilationResult<T> cached =
+                    codeCache.load(cacheKey, cacheCompiler, compilerEnv, sourceString);
+            if (cached != null) {
+                return new Compiled<>(cacheCompiler, cached, null);
+            }
+        }
+
         ScriptNode tree =
                 parse(
                         sourceString,
+                        sourceReader,
                         sourceName,
                         lineno,
                         compilerEnv,
@@ -2744,9 +2819,24 @@ public class Context implements Closeable {
                         returnFunction);
 
         CompilationResult<T> result;
+        TieredCompiler tiering = null;
         try {
             if (compiler == null) {
                 compiler = createCompiler();
+                if (evaluationMethod == EvaluationMethod.Tiered
+                        && debugger == null
+                        && EvaluationMethod.Compiler.isValid()) {
+                    tiering =
+                            new TieredCompiler(
+                                    sourceString,
+                                    sourceName,
+                                    lineno,
+                                    securityDomain,
+                                    compilerEnv,
+                                    returnFunction,
+                                    scope);
+                    compilerEnv.setGenerateLoopEntries(true);
+                }
             }
 
             result = compileFn.compile(compiler, compilerEnv, tree, sourceString);
@@ -2766,6 +2856,13 @@ public class Context implements Closeable {
 
             compiler = createInterpreter();
             result = compileFn.compile(compiler, compilerEnv, tree, sourceString);
+            getFactory().getCompilationStats().fellBackToInterpreter();
+            // The entry would be read back with the compiler
+            cacheKey = null;
+        }
+
+        if (cacheKey != null) {
+            codeCache.store(cacheKey, compiler, result);
         }
 
         if (debugger != null) {
@@ -2786,11 +2883,49 @@ public class Context implements Closeable {
             }
         }
 
-        return new Compiled<>(compiler, result);
+        return new Compiled<>(compiler, result, tiering);
+    }
+
+    /**
+     * Whether the source can be parsed as it is read, which is only the case if nothing needs its
+     * text afterwards. It is kept for decompilation, lazily compiled functions, the code cache and
+     * the debugger, and parsed again if the compiled code turns out to be too big for a class.
+     */
+    private boolean canParseFromReader(
+            Evaluator compiler, CompilerEnvirons compilerEnv, CodeCache codeCache) {
+        boolean interpreted =
+                compiler == null
+                        ? evaluationMethod == EvaluationMethod.Interpreter
+                        : compiler instanceof Interpreter;
+        return interpreted
+                && !compilerEnv.isGeneratingSource()
+                && !compilerEnv.isLazyFunctionBodies()
+                && !compilerEnv.isIdeMode()
+                && compilerEnv.getSourceMapper() == null
+                && codeCache == null
+                && debugger == null;
+    }
+
+    ScriptNode parse(
+            String sourceString,
+            String sourceName,
+            int lineno,
+            CompilerEnvirons compilerEnv,
+            ErrorReporter compilationErrorReporter,
+            boolean returnFunction) {
+        return parse(
+                sourceString,
+                null,
+                sourceName,
+                lineno,
+                compilerEnv,
+                compilationErrorReporter,
+                returnFunction);
     }
 
     private ScriptNode parse(
             String sourceString,
+            Reader sourceReader,
             String sourceName,
             int lineno,
             CompilerEnvirons compilerEnv,
@@ -2801,7 +2936,16 @@ public class Context implements Closeable {
             p.calledByCompileFunction = true;
         }
 
-        AstRoot ast = p.parse(sourceString, sourceName, lineno);
+        AstRoot ast;
+        if (sourceReader != null) {
+            try {
+                ast = p.parse(sourceReader, sourceName, lineno);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            ast = p.parse(sourceString, sourceName, lineno);
+        }
         if (returnFunction) {
             // parser no longer adds function to script node
             if (!(ast.getFirstChild() != null && ast.getFirstChild().getType() == Token.FUNCTION)) {
@@ -2816,6 +2960,13 @@ public class Context implements Closeable {
 
         IRFactory irf =
                 new IRFactory(compilerEnv, sourceName, sourceString, compilationErrorReporter);
+        irf.setLazyFunctionBodies(
+                compilerEnv.isLazyFunctionBodies()
+                        && !returnFunction
+                        && debugger == null
+                        && !compilerEnv.isInEval()
+                        && !compilerEnv.recoverFromErrors()
+                        && compilerEnv.getSourceMapper() == null);
         ScriptNode tree = irf.transformTree(ast);
 
         if (compilerEnv.isGeneratingSource()) {
@@ -2992,7 +3143,12 @@ public class Context implements Closeable {
         /** Original bytecode-based interpreter. */
         Interpreter(-1, true, InterpreterClass),
         /** JVM bytecode compiler. */
-        Compiler(9, false, CodegenClass);
+        Compiler(9, false, CodegenClass),
+        /**
+         * Start out in the interpreter, and compile a function to JVM bytecode once it has been
+         * called, or has looped, often enough to be worth it. See {@link TieredCompiler}.
+         */
+        Tiered(0, true, InterpreterClass);
 
         private final int optimizationLevel;
         private final boolean isInterpreted;
@@ -10,6 +10,7 @@ package org.mozilla.javascript;
 
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.concurrent.ExecutorService;
 import org.mozilla.javascript.config.RhinoConfig;
 
 /**
@@ -105,6 +106,8 @@ import org.mozilla.javascript.config.RhinoConfig;
 public class ContextFactory {
     private static final boolean useThreadSafeObjectsByDefault =
             RhinoConfig.get("rhino.useThreadSafeObjectsByDefault", false);
+    private static final boolean useShapedObjectsByDefault =
+            RhinoConfig.get("rhino.useShapedObjectsByDefault", false);
 
     private static volatile boolean hasCustomGlobal;
     private static ContextFactory global = new ContextFactory();
@@ -115,6 +118,9 @@ public class ContextFactory {
     private volatile Object listeners;
     private boolean disabledListening;
     private ClassLoader applicationClassLoader;
+    private volatile ExecutorService compilationExecutor;
+    private final CompilationStats compilationStats = new CompilationStats();
+    private volatile CodeCache codeCache;
 
     /** Listener of {@link Context} creation and release events. */
     public interface Listener {
@@ -270,6 +276,9 @@ public class ContextFactory {
 
             case Context.FEATURE_INTL_402:
                 return false;
+
+            case Context.FEATURE_SHAPED_OBJECTS:
+                return useShapedObjectsByDefault;
         }
         // It is a bug to call the method with unknown featureIndex
         throw new IllegalArgumentException(String.valueOf(featureIndex));
@@ -317,6 +326,64 @@ public class ContextFactory {
         this.applicationClassLoader = loader;
     }
 
+    /**
+     * Get the executor that compiles hot functions to bytecode when running with {@link
+     * Context.EvaluationMethod#Tiered}, or null if they are compiled on the thread that runs them.
+     *
+     * @see #initCompilationExecutor(ExecutorService)
+     */
+    public final ExecutorService getCompilationExecutor() {
+        return compilationExecutor;
+    }
+
+    /**
+     * Set the executor that compiles hot functions to bytecode when running with {@link
+     * Context.EvaluationMethod#Tiered}. Each job enters a context from this factory, so the
+     * executor's threads must be allowed to do that. While a job is queued or running, the
+     * functions that it is compiling keep running in the interpreter. If the executor rejects a
+     * job then the function is compiled on the thread that runs it, as it is when no executor is
+     * set.
+     *
+     * <p>The factory does not shut the executor down.
+     */
+    public final void initCompilationExecutor(ExecutorService executor) {
+        if (executor == null) throw new IllegalArgumentException("executor is null");
+        if (this.compilationExecutor != null)
+            throw new IllegalStateException("compilationExecutor can only be set once");
+        checkNotSealed();
+
+        this.compilationExecutor = executor;
+    }
+
+    /** Get the counters that describe the work done by tiered execution in this factory. */
+    public final CompilationStats getCompilationStats() {
+        return compilationStats;
+    }
+
+    /**
+     * Get the cache that scripts compiled by contexts of this factory are kept in, or null if there
+     * is none.
+     *
+     * @see #initCodeCache(CodeCache)
+     */
+    public final CodeCache getCodeCache() {
+        return codeCache;
+    }
+
+    /**
+     * Set the cache that compiled scripts are kept in. When a context of this factory compiles a
+     * script or function that is already in the cache, the classes or interpreter code in the
+     * cache are loaded instead and the source is not parsed. There is no cache by default.
+     */
+    public final void initCodeCache(CodeCache cache) {
+        if (cache == null) throw new IllegalArgumentException("cache is null");
+        if (this.codeCache != null)
+            throw new IllegalStateException("codeCache can only be set once");
+        checkNotSealed();
+
+        this.codeCache = cache;
+    }
+
     /**
      * Execute top call to script or function. When the runtime is about to execute a script or
      * function that will create the first stack frame with scriptable code, it calls this method to
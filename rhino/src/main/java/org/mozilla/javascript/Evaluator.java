@@ -6,6 +6,9 @@
 
 package org.mozilla.javascript;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.List;
 import org.mozilla.javascript.ast.ScriptNode;
 
@@ -91,4 +94,33 @@ public interface Evaluator {
      * @return list of strings for the stack trace
      */
     public List<String> getScriptStack(RhinoException ex);
+
+    /**
+     * Write a compilation result so that {@link #readCompilationResult} can recreate it, possibly
+     * in another JVM. This is used by {@link CodeCache}.
+     *
+     * @param compiled the result returned by {@link #compileScript} or {@link #compileFunction}
+     * @param out where to write it
+     * @return false if this evaluator can't write its results, in which case nothing is written
+     */
+    default boolean writeCompilationResult(CompilationResult<?> compiled, DataOutput out)
+            throws IOException {
+        return false;
+    }
+
+    /**
+     * Read a compilation result written by {@link #writeCompilationResult}. The compiler
+     * environment and the source must be the same as those that the result was compiled with.
+     *
+     * @param in where to read the result from
+     * @param compilerEnv Compiler environment
+     * @param rawSource the source code
+     * @return a result that can be passed to {@link #createScriptObject} or {@link
+     *     #createFunctionObject}, depending on what was written
+     * @throws IOException if the data is not a valid result
+     */
+    default <T extends ScriptOrFn<T>> CompilationResult<T> readCompilationResult(
+            DataInput in, CompilerEnvirons compilerEnv, String rawSource) throws IOException {
+        throw new UnsupportedOperationException();
+    }
 }
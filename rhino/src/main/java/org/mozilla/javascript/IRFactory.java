@@ -100,6 +100,7 @@ public final class IRFactory {
     private Parser parser;
     private AstNodePosition astNodePos;
     private boolean outerScopeIsStrict;
+    private boolean lazyFunctionBodies;
 
     public IRFactory(CompilerEnvirons env, String sourceString) {
         this(env, null, sourceString, env.getErrorReporter());
@@ -122,6 +123,15 @@ public final class IRFactory {
         parser.setSourceURI(sourceName);
     }
 
+    /**
+     * Leave the bodies of nested functions that are not likely to be called at once out of the IR,
+     * so that they are compiled when they are first called. See {@link
+     * CompilerEnvirons#setLazyFunctionBodies(boolean)}.
+     */
+    void setLazyFunctionBodies(boolean lazyFunctionBodies) {
+        this.lazyFunctionBodies = lazyFunctionBodies;
+    }
+
     /** Transforms the tree into a lower-level IR suitable for codegen. */
     public ScriptNode transformTree(AstRoot root) {
         parser.currentScriptOrFn = root;
@@ -134,7 +144,9 @@ public final class IRFactory {
 
         astNodePos.push(root);
         try {
-            return (ScriptNode) transform(root);
+            ScriptNode tree = (ScriptNode) transform(root);
+            detachFromParseTree(tree);
+            return tree;
         } catch (Parser.ParserException e) {
             parser.reportErrorsIfExists(root.getLineno());
             return null;
@@ -143,6 +155,30 @@ public final class IRFactory {
         }
     }
 
+    /**
+     * The IR is built partly out of the nodes of the parse tree, and their links back into it
+     * would otherwise keep the whole parse tree alive until the script has been compiled.
+     */
+    private static void detachFromParseTree(ScriptNode tree) {
+        ArrayDeque<Node> work = new ArrayDeque<>();
+        work.push(tree);
+        while (!work.isEmpty()) {
+            Node node = work.pop();
+            if (node instanceof AstNode) {
+                ((AstNode) node).detachFromParseTree();
+            }
+            if (node instanceof ScriptNode) {
+                ScriptNode scriptOrFn = (ScriptNode) node;
+                for (int i = 0; i < scriptOrFn.getFunctionCount(); i++) {
+                    work.push(scriptOrFn.getFunctionNode(i));
+                }
+            }
+            for (Node child = node.getFirstChild(); child != null; child = child.getNext()) {
+                work.push(child);
+            }
+        }
+    }
+
     // Might want to convert this to polymorphism - move transform*
     // functions into the AstNode subclasses.  OTOH that would make
     // IR transformation part of the public AST API - desirable?
@@ -652,6 +688,11 @@ public final class IRFactory {
 
             int lineno = fn.getBody().getLineno(), column = fn.getBody().getColumn();
             ++parser.nestingOfFunction; // only for body, not params
+            if (isLazyFunction(fn)) {
+                fn.setIsLazy();
+                return initFunction(
+                        fn, index, new Node(Token.BLOCK, lineno, column), fn.getFunctionType());
+            }
             Node body = transform(fn.getBody());
 
             /* Process simple default parameters */
@@ -734,6 +775,31 @@ public final class IRFactory {
         }
     }
 
+    /**
+     * Returns true if the body of the function may be left out of the IR. A function in parentheses
+     * or called where it is defined is most likely called at once, so it is compiled now. So is a
+     * function that makes up the whole script, which is how the body of a lazy function is
+     * compiled when it is first called.
+     */
+    private boolean isLazyFunction(FunctionNode fn) {
+        if (!lazyFunctionBodies
+                || fn.isGenerator()
+                || fn.isMethodDefinition()
+                || fn.getMemberExprNode() != null) {
+            return false;
+        }
+        int type = fn.getFunctionType();
+        if (type != FunctionNode.FUNCTION_STATEMENT && type != FunctionNode.FUNCTION_EXPRESSION) {
+            return false;
+        }
+        AstNode parent = fn.getParent();
+        if (parent instanceof ParenthesizedExpression
+                || (parent instanceof FunctionCall && ((FunctionCall) parent).getTarget() == fn)) {
+            return false;
+        }
+        return !(parent instanceof AstRoot && parent.getFirstChild() == fn && fn.getNext() == null);
+    }
+
     private Node transformFunctionCall(FunctionCall node) {
         astNodePos.push(node);
         try {
@@ -2586,7 +2652,16 @@ public final class IRFactory {
                 return;
             }
 
-            int l = 1;
+            if (sourceString == null) {
+                // The source was read from a stream and is no longer available
+                savedLineno = lineno;
+                savedLine = null;
+                savedLineOffset = 0;
+                return;
+            }
+
+            // Lines are numbered from the line that the script starts on
+            int l = stack.peekLast().getLineno();
             boolean isPrevCR = false;
             int begin = 0;
             for (; begin < sourceString.length(); begin++) {
@@ -8,6 +8,9 @@ package org.mozilla.javascript;
 
 import static org.mozilla.javascript.UniqueTag.DOUBLE_MARK;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.math.BigInteger;
 import java.util.Arrays;
@@ -61,11 +64,13 @@ public final class Interpreter extends AInterpreter<CallFrame, InterpreterData<?
 
     private static class InterpreterCompilationResult<T extends ScriptOrFn<T>>
             implements CompilationResult<T> {
+        private final JSDescriptor.Builder<T> builder;
         private final JSDescriptor<T> descriptor;
         private final Scriptable homeObject;
 
-        InterpreterCompilationResult(JSDescriptor<T> descriptor, Scriptable homeObject) {
-            this.descriptor = descriptor;
+        InterpreterCompilationResult(JSDescriptor.Builder<T> builder, Scriptable homeObject) {
+            this.builder = builder;
+            this.descriptor = builder.build(x -> {});
             this.homeObject = homeObject;
         }
 
@@ -79,16 +84,17 @@ public final class Interpreter extends AInterpreter<CallFrame, InterpreterData<?
     public CompilationResult<JSScript> compileScript(
             CompilerEnvirons compilerEnv, ScriptNode tree, String rawSource) {
         CodeGenerator<JSScript> cgen = new CodeGenerator<>();
-        JSDescriptor<JSScript> itsData = cgen.compile(compilerEnv, tree, rawSource, false);
-        return new InterpreterCompilationResult<>(itsData, compilerEnv.homeObject());
+        JSDescriptor.Builder<JSScript> builder = cgen.compile(compilerEnv, tree, rawSource, false);
+        return new InterpreterCompilationResult<>(builder, compilerEnv.homeObject());
     }
 
     @Override
     public CompilationResult<JSFunction> compileFunction(
             CompilerEnvirons compilerEnv, ScriptNode tree, String rawSource) {
         CodeGenerator<JSFunction> cgen = new CodeGenerator<>();
-        JSDescriptor<JSFunction> itsData = cgen.compile(compilerEnv, tree, rawSource, true);
-        return new InterpreterCompilationResult<>(itsData, compilerEnv.homeObject());
+        JSDescriptor.Builder<JSFunction> builder =
+                cgen.compile(compilerEnv, tree, rawSource, true);
+        return new InterpreterCompilationResult<>(builder, compilerEnv.homeObject());
     }
 
     @Override
@@ -109,6 +115,70 @@ public final class Interpreter extends AInterpreter<CallFrame, InterpreterData<?
                 cx, scope, result.descriptor, result.homeObject, staticSecurityDomain);
     }
 
+    @Override
+    public boolean writeCompilationResult(CompilationResult<?> compiled, DataOutput out)
+            throws IOException {
+        writeBuilder(((InterpreterCompilationResult<?>) compiled).builder, out);
+        return true;
+    }
+
+    @Override
+    public <T extends ScriptOrFn<T>> CompilationResult<T> readCompilationResult(
+            DataInput in, CompilerEnvirons compilerEnv, String rawSource) throws IOException {
+        JSDescriptor.Builder<T> builder = new JSDescriptor.Builder<>();
+        builder.securityController = compilerEnv.securityController();
+        builder.securityDomain = compilerEnv.securityDomain();
+        LazyFunctionCode.Origin lazyOrigin =
+                compilerEnv.isLazyFunctionBodies()
+                        ? new LazyFunctionCode.Origin(rawSource, compilerEnv)
+                        : null;
+        readBuilder(builder, lazyOrigin, rawSource, in);
+        return new InterpreterCompilationResult<>(builder, compilerEnv.homeObject());
+    }
+
+    private static void writeBuilder(JSDescriptor.Builder<?> builder, DataOutput out)
+            throws IOException {
+        boolean isLazy = builder.code instanceof LazyFunctionCode.Builder;
+        out.writeBoolean(isLazy);
+        if (isLazy) {
+            ((LazyFunctionCode.Builder) builder.code).write(out);
+        } else {
+            ((InterpreterData.Builder<?>) builder.code).write(out);
+        }
+        // The constructor is either the code itself or nothing
+        out.writeBoolean(builder.constructor == builder.code);
+        builder.writeFields(out);
+        out.writeInt(builder.nestedFunctions.size());
+        for (JSDescriptor.Builder<?> child : builder.nestedFunctions) {
+            writeBuilder(child, out);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T extends ScriptOrFn<T>> void readBuilder(
+            JSDescriptor.Builder<T> builder,
+            LazyFunctionCode.Origin lazyOrigin,
+            String rawSource,
+            DataInput in)
+            throws IOException {
+        JSCode.Builder<T> code;
+        if (in.readBoolean()) {
+            if (lazyOrigin == null) {
+                throw new IOException("Lazy function in an entry without lazy functions");
+            }
+            code = (JSCode.Builder) LazyFunctionCode.Builder.read(in, lazyOrigin);
+        } else {
+            code = InterpreterData.Builder.read(in);
+        }
+        builder.code = code;
+        builder.constructor = in.readBoolean() ? code : new JSCode.NullBuilder<>();
+        builder.readFields(in, rawSource);
+        int nestedCount = in.readInt();
+        for (int i = 0; i != nestedCount; ++i) {
+            readBuilder(builder.createChildBuilder(), lazyOrigin, rawSource, in);
+        }
+    }
+
     private static int getShort(byte[] iCode, int pc) {
         return (iCode[pc] << 8) | (iCode[pc + 1] & 0xFF);
     }
@@ -1097,6 +1167,13 @@ public final class Interpreter extends AInterpreter<CallFrame, InterpreterData<?
                     if (offset != 0) {
                         // -1 accounts for pc pointing to jump opcode + 1
                         frame.pc += offset - 1;
+                        if (offset < 0 && frame.compilerData.tiering != null) {
+                            countHotness(cx, frame.compilerData, frame.fnOrScript);
+                            if (frame.compilerData.loopEntries != null
+                                    && enterCompiledLoop(cx, frame)) {
+                                break Loop;
+                            }
+                        }
                     } else {
                         frame.pc = frame.compilerData.longJumps.get(frame.pc);
                     }
@@ -2158,7 +2235,13 @@ public final class Interpreter extends AInterpreter<CallFrame, InterpreterData<?
             Object lhs = stack[frame.stackTop];
             if (lhs == DOUBLE_MARK) lhs = ScriptRuntime.wrapNumber(sDbl[frame.stackTop]);
             stack[frame.stackTop] =
-                    ScriptRuntime.getObjectPropNoWarn(lhs, state.stringReg, cx, frame.scope);
+                    PropertyCache.getObjectPropNoWarn(
+                            frame.compilerData,
+                            frame.pc - 1,
+                            lhs,
+                            state.stringReg,
+                            cx,
+                            frame.scope);
             return null;
         }
     }
@@ -2171,7 +2254,13 @@ public final class Interpreter extends AInterpreter<CallFrame, InterpreterData<?
             Object lhs = stack[frame.stackTop];
             if (lhs == DOUBLE_MARK) lhs = ScriptRuntime.wrapNumber(sDbl[frame.stackTop]);
             stack[frame.stackTop] =
-                    ScriptRuntime.getObjectProp(lhs, state.stringReg, cx, frame.scope);
+                    PropertyCache.getObjectProp(
+                            frame.compilerData,
+                            frame.pc - 1,
+                            lhs,
+                            state.stringReg,
+                            cx,
+                            frame.scope);
             return null;
         }
     }
@@ -2204,7 +2293,14 @@ public final class Interpreter extends AInterpreter<CallFrame, InterpreterData<?
             Object lhs = stack[frame.stackTop - 1];
             if (lhs == DOUBLE_MARK) lhs = ScriptRuntime.wrapNumber(sDbl[frame.stackTop - 1]);
             stack[--frame.stackTop] =
-                    ScriptRuntime.setObjectProp(lhs, state.stringReg, rhs, cx, frame.scope);
+                    PropertyCache.setObjectProp(
+                            frame.compilerData,
+                            frame.pc - 1,
+                            lhs,
+                            state.stringReg,
+                            rhs,
+                            cx,
+                            frame.scope);
             return null;
         }
     }
@@ -2477,7 +2573,14 @@ public final class Interpreter extends AInterpreter<CallFrame, InterpreterData<?
             if (obj == DOUBLE_MARK) obj = ScriptRuntime.wrapNumber(sDbl[frame.stackTop]);
             // stringReg: property
             stack[frame.stackTop] =
-                    ScriptRuntime.getPropAndThis(obj, state.stringReg, cx, frame.scope);
+                    PropertyCache.getPropAndThis(
+                            frame.compilerData,
+                            frame.pc - 1,
+                            obj,
+                            state.stringReg,
+                            cx,
+                            frame.scope,
+                            false);
             return null;
         }
     }
@@ -2491,7 +2594,14 @@ public final class Interpreter extends AInterpreter<CallFrame, InterpreterData<?
             if (obj == DOUBLE_MARK) obj = ScriptRuntime.wrapNumber(sDbl[frame.stackTop]);
             // stringReg: property
             stack[frame.stackTop] =
-                    ScriptRuntime.getPropAndThisOptional(obj, state.stringReg, cx, frame.scope);
+                    PropertyCache.getPropAndThis(
+                            frame.compilerData,
+                            frame.pc - 1,
+                            obj,
+                            state.stringReg,
+                            cx,
+                            frame.scope,
+                            true);
             return null;
         }
     }
@@ -4285,6 +4395,9 @@ public final class Interpreter extends AInterpreter<CallFrame, InterpreterData<?
             ScriptOrFn<?> fnOrScript,
             InterpreterData<?> code,
             CallFrame parentFrame) {
+        if (code.tiering != null) {
+            countHotness(cx, code, fnOrScript);
+        }
         CallFrame frame =
                 new CallFrame(
                         cx,
@@ -4301,6 +4414,51 @@ public final class Interpreter extends AInterpreter<CallFrame, InterpreterData<?
         return frame;
     }
 
+    private static void countHotness(
+            Context cx, InterpreterData<?> code, ScriptOrFn<?> fnOrScript) {
+        if (++code.hotness == TieredCompiler.THRESHOLD) {
+            TieredCompiler.tierUp(cx, code, fnOrScript);
+        }
+    }
+
+    /**
+     * Called when a script jumps back to the start of a loop once it is hot. If the script has been
+     * compiled, run the rest of it from the start of the loop's next iteration in compiled code,
+     * store the result in the frame, and return true. This is only done for the script that was
+     * called from Java so that its frame can simply be dropped when the compiled code returns.
+     */
+    private static boolean enterCompiledLoop(Context cx, CallFrame frame) {
+        InterpreterData<?> code = frame.compilerData;
+        if (frame.parentFrame != null
+                || frame.stackTop != frame.emptyStackTop
+                || !(frame.fnOrScript instanceof JSScript)) {
+            return false;
+        }
+        JSCode<JSScript> loopCode = code.tiering.getLoopCode();
+        if (loopCode == null) {
+            return false;
+        }
+        int[] entries = code.loopEntries;
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] == frame.pc) {
+                Object result = frame.result;
+                if (result == DOUBLE_MARK) {
+                    result = ScriptRuntime.wrapNumber(frame.resultDbl);
+                }
+                frame.result =
+                        loopCode.resume(
+                                cx,
+                                (JSScript) frame.fnOrScript,
+                                frame.thisObj,
+                                frame.scope,
+                                i,
+                                result);
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static void setCallResult(CallFrame frame, Object callResult, double callResultDbl) {
         if (frame.savedCallOp == Token.CALL || frame.savedCallOp == Icode.CALL_ON_SUPER) {
             frame.stack[frame.stackTop] = callResult;
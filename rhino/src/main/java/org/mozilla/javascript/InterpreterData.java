@@ -6,11 +6,17 @@
 
 package org.mozilla.javascript;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serial;
 import java.io.Serializable;
+import java.lang.reflect.Array;
 import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 final class InterpreterData<T extends ScriptOrFn<T>> extends ACompilerData<T, InterpreterData<?>>
         implements Serializable {
@@ -36,6 +42,7 @@ final class InterpreterData<T extends ScriptOrFn<T>> extends ACompilerData<T, In
             int maxCalleeArgs,
             Object[] literalIds,
             Map<Integer, Integer> longJumps,
+            int[] loopEntries,
             int firstLinePC) {
         super(maxVars, maxLocals, maxStack, maxFrameArray, exceptionTable);
         this.itsStringTable = itsStringTable;
@@ -47,6 +54,7 @@ final class InterpreterData<T extends ScriptOrFn<T>> extends ACompilerData<T, In
         this.maxCalleeArgs = maxCalleeArgs;
         this.literalIds = literalIds;
         this.longJumps = longJumps;
+        this.loopEntries = loopEntries;
         this.firstLinePC = firstLinePC;
     }
 
@@ -64,10 +72,21 @@ final class InterpreterData<T extends ScriptOrFn<T>> extends ACompilerData<T, In
 
     final Map<Integer, Integer> longJumps;
 
+    // The pc of the start of each loop that compiled code can be entered at, or null
+    final int[] loopEntries;
+
     final int firstLinePC;
 
     private int icodeHashCode = 0;
 
+    // Inline caches for property accesses, indexed by the pc of the instruction
+    transient PropertyCache[] propertyCaches;
+
+    // Set if this code may be replaced by compiled code once it is hot enough
+    transient TieredCompiler tiering;
+    // Calls plus backwards jumps, used to decide when that is
+    transient int hotness;
+
     @Override
     public int getLineNumberFromPc(int pc, int pcSourceLineStart) {
         if (pcSourceLineStart >= 0) {
@@ -118,6 +137,9 @@ final class InterpreterData<T extends ScriptOrFn<T>> extends ACompilerData<T, In
         double[] itsDoubleTable;
         BigInteger[] itsBigIntTable;
         Object[] itsRegExpLiterals;
+        // The source and flags of each regular expression literal, in pairs, so that the literals
+        // can be compiled again when the code is read back
+        String[] itsRegExpSources;
         Object[] itsTemplateLiterals;
 
         byte[] itsICode;
@@ -135,6 +157,8 @@ final class InterpreterData<T extends ScriptOrFn<T>> extends ACompilerData<T, In
 
         Map<Integer, Integer> longJumps;
 
+        int[] loopEntries;
+
         InterpreterData<T> built = null;
 
         int firstLinePC = -1; // PC for the first LINE icode
@@ -165,9 +189,274 @@ final class InterpreterData<T extends ScriptOrFn<T>> extends ACompilerData<T, In
                                 maxCalleeArgs,
                                 literalIds,
                                 jumpMap,
+                                loopEntries,
                                 firstLinePC);
             }
             return built;
         }
+
+        /**
+         * Write the code in a compact binary form that {@link #read} turns back into a builder
+         * without the source being parsed again. Regular expression literals are written as their
+         * source and flags and compiled again when they are read.
+         */
+        void write(DataOutput out) throws IOException {
+            out.writeInt(itsICode.length);
+            out.write(itsICode);
+
+            writeStrings(itsStringTable, out);
+            if (writeLength(itsDoubleTable, out)) {
+                for (double d : itsDoubleTable) {
+                    out.writeDouble(d);
+                }
+            }
+            if (writeLength(itsBigIntTable, out)) {
+                for (BigInteger b : itsBigIntTable) {
+                    byte[] bytes = b.toByteArray();
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+            writeStrings(itsRegExpSources, out);
+            if (writeLength(itsTemplateLiterals, out)) {
+                for (Object literal : itsTemplateLiterals) {
+                    writeStrings((String[]) literal, out);
+                }
+            }
+            if (writeLength(literalIds, out)) {
+                for (Object ids : literalIds) {
+                    writeLiteralIds(ids, out);
+                }
+            }
+
+            writeInts(exceptionTable, out);
+            writeInts(loopEntries, out);
+            out.writeInt(longJumps == null ? -1 : longJumps.size());
+            if (longJumps != null) {
+                // Sorted, so that the same code is always written the same way
+                for (Map.Entry<Integer, Integer> e : new TreeMap<>(longJumps).entrySet()) {
+                    out.writeInt(e.getKey());
+                    out.writeInt(e.getValue());
+                }
+            }
+
+            out.writeInt(maxVars);
+            out.writeInt(maxLocals);
+            out.writeInt(maxStack);
+            out.writeInt(maxFrameArray);
+            out.writeInt(maxCalleeArgs);
+            out.writeInt(firstLinePC);
+        }
+
+        /** Read code written by {@link #write}. */
+        static <T extends ScriptOrFn<T>> Builder<T> read(DataInput in) throws IOException {
+            Builder<T> b = new Builder<>();
+            b.itsICode = new byte[in.readInt()];
+            in.readFully(b.itsICode);
+
+            b.itsStringTable = readStrings(in);
+            int length = in.readInt();
+            if (length >= 0) {
+                b.itsDoubleTable = new double[length];
+                for (int i = 0; i != length; ++i) {
+                    b.itsDoubleTable[i] = in.readDouble();
+                }
+            } else {
+                b.itsDoubleTable = null;
+            }
+            length = in.readInt();
+            if (length >= 0) {
+                b.itsBigIntTable = new BigInteger[length];
+                for (int i = 0; i != length; ++i) {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    b.itsBigIntTable[i] = new BigInteger(bytes);
+                }
+            } else {
+                b.itsBigIntTable = null;
+            }
+            b.itsRegExpSources = readStrings(in);
+            if (b.itsRegExpSources != null) {
+                Context cx = Context.getContext();
+                RegExpProxy rep = ScriptRuntime.checkRegExpProxy(cx);
+                b.itsRegExpLiterals = new Object[b.itsRegExpSources.length / 2];
+                for (int i = 0; i != b.itsRegExpLiterals.length; ++i) {
+                    b.itsRegExpLiterals[i] =
+                            rep.compileRegExp(
+                                    cx, b.itsRegExpSources[2 * i], b.itsRegExpSources[2 * i + 1]);
+                }
+            }
+            length = in.readInt();
+            if (length >= 0) {
+                b.itsTemplateLiterals = new Object[length];
+                for (int i = 0; i != length; ++i) {
+                    b.itsTemplateLiterals[i] = readStrings(in);
+                }
+            }
+            length = in.readInt();
+            if (length >= 0) {
+                b.literalIds = new Object[length];
+                for (int i = 0; i != length; ++i) {
+                    b.literalIds[i] = readLiteralIds(in);
+                }
+            }
+
+            b.exceptionTable = readInts(in);
+            b.loopEntries = readInts(in);
+            length = in.readInt();
+            if (length >= 0) {
+                b.longJumps = new HashMap<>();
+                for (int i = 0; i != length; ++i) {
+                    b.longJumps.put(in.readInt(), in.readInt());
+                }
+            }
+
+            b.maxVars = in.readInt();
+            b.maxLocals = in.readInt();
+            b.maxStack = in.readInt();
+            b.maxFrameArray = in.readInt();
+            b.maxCalleeArgs = in.readInt();
+            b.firstLinePC = in.readInt();
+            return b;
+        }
+
+        private static final int LITERAL_OBJECT_KEYS = 0;
+        private static final int LITERAL_INDEXES = 1;
+
+        private static final int KEY_STRING = 0;
+        private static final int KEY_INTEGER = 1;
+        // No key, or a computed key that is set when the literal is evaluated
+        private static final int KEY_NONE = 2;
+
+        private static void writeLiteralIds(Object ids, DataOutput out) throws IOException {
+            if (ids instanceof int[]) {
+                out.writeByte(LITERAL_INDEXES);
+                writeInts((int[]) ids, out);
+                return;
+            }
+            if (ids != null && !(ids instanceof Object[])) {
+                throw new IOException("Can't write literal " + ids);
+            }
+            out.writeByte(LITERAL_OBJECT_KEYS);
+            Object[] keys = (Object[]) ids;
+            if (writeLength(keys, out)) {
+                for (Object key : keys) {
+                    if (key instanceof String) {
+                        out.writeByte(KEY_STRING);
+                        writeString((String) key, out);
+                    } else if (key instanceof Integer) {
+                        out.writeByte(KEY_INTEGER);
+                        out.writeInt((Integer) key);
+                    } else if (key == null || key instanceof Node) {
+                        out.writeByte(KEY_NONE);
+                    } else {
+                        throw new IOException("Can't write literal key " + key);
+                    }
+                }
+            }
+        }
+
+        private static Object readLiteralIds(DataInput in) throws IOException {
+            int kind = in.readByte();
+            if (kind == LITERAL_INDEXES) {
+                return readInts(in);
+            } else if (kind != LITERAL_OBJECT_KEYS) {
+                throw new IOException("Bad literal kind " + kind);
+            }
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            Object[] keys = new Object[length];
+            for (int i = 0; i != length; ++i) {
+                int type = in.readByte();
+                if (type == KEY_STRING) {
+                    keys[i] = readString(in);
+                } else if (type == KEY_INTEGER) {
+                    keys[i] = in.readInt();
+                } else if (type != KEY_NONE) {
+                    throw new IOException("Bad literal key type " + type);
+                }
+            }
+            return keys;
+        }
+
+        /** Write the length of the array, or -1 if it is null, and return whether it was not. */
+        private static boolean writeLength(Object array, DataOutput out) throws IOException {
+            int length = array == null ? -1 : Array.getLength(array);
+            out.writeInt(length);
+            return array != null;
+        }
+
+        private static void writeInts(int[] ints, DataOutput out) throws IOException {
+            if (writeLength(ints, out)) {
+                for (int i : ints) {
+                    out.writeInt(i);
+                }
+            }
+        }
+
+        private static int[] readInts(DataInput in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            int[] ints = new int[length];
+            for (int i = 0; i != length; ++i) {
+                ints[i] = in.readInt();
+            }
+            return ints;
+        }
+
+        private static void writeStrings(String[] strings, DataOutput out) throws IOException {
+            if (writeLength(strings, out)) {
+                for (String s : strings) {
+                    out.writeBoolean(s != null);
+                    if (s != null) {
+                        writeString(s, out);
+                    }
+                }
+            }
+        }
+
+        private static String[] readStrings(DataInput in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            String[] strings = new String[length];
+            for (int i = 0; i != length; ++i) {
+                strings[i] = in.readBoolean() ? readString(in) : null;
+            }
+            return strings;
+        }
+
+        // Strings that may be too long for writeUTF are written as chars
+        private static final int MAX_UTF_LENGTH = 0xFFFF / 3;
+
+        private static void writeString(String s, DataOutput out) throws IOException {
+            out.writeInt(s.length());
+            if (s.length() <= MAX_UTF_LENGTH) {
+                out.writeUTF(s);
+            } else {
+                out.writeChars(s);
+            }
+        }
+
+        private static String readString(DataInput in) throws IOException {
+            int length = in.readInt();
+            if (length <= MAX_UTF_LENGTH) {
+                String s = in.readUTF();
+                if (s.length() != length) {
+                    throw new IOException("Bad string length");
+                }
+                return s;
+            }
+            char[] chars = new char[length];
+            for (int i = 0; i != length; ++i) {
+                chars[i] = in.readChar();
+            }
+            return new String(chars);
+        }
     }
 }
@@ -1,5 +1,8 @@
 package org.mozilla.javascript;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -31,8 +34,9 @@ public final class JSDescriptor<T extends ScriptOrFn<T>> implements Serializable
     private static final int REQUIRES_ARGUMENT_OBJECT_FLAG = 1 << 11;
     private static final int DECLARED_AS_FUNCTION_EXPRESSION_FLAG = 1 << 12;
 
-    private final JSCode<T> code;
-    private final JSCode<T> constructor;
+    // Not final because tiered execution may replace interpreted code with compiled code
+    private JSCode<T> code;
+    private JSCode<T> constructor;
     private final JSDescriptor<?> parent;
     public List<JSDescriptor<JSFunction>> nestedFunctions;
     private final String[] paramAndVarNames;
@@ -126,6 +130,15 @@ public final class JSDescriptor<T extends ScriptOrFn<T>> implements Serializable
         return constructor;
     }
 
+    /**
+     * Replace the code of this descriptor with the code of another descriptor that was compiled
+     * from the same source. Calls that are already running are not affected.
+     */
+    void replaceCode(JSDescriptor<T> other) {
+        this.code = other.code;
+        this.constructor = other.constructor;
+    }
+
     public List<JSDescriptor<JSFunction>> getNestedFunctions() {
         return nestedFunctions;
     }
@@ -177,7 +190,11 @@ public final class JSDescriptor<T extends ScriptOrFn<T>> implements Serializable
         return sourceFile;
     }
 
+    /** Return the source of the function or script, or null if its source was not kept. */
     public String getRawSource() {
+        if (rawSource == null) {
+            return null;
+        }
         return rawSource.substring(rawSourceStart, rawSourceEnd);
     }
 
@@ -400,5 +417,91 @@ public final class JSDescriptor<T extends ScriptOrFn<T>> implements Serializable
         public void setCode(JSCode.Builder<T> code) {
             this.code = (JSCode.Builder<T>) code;
         }
+
+        /**
+         * Write the fields of this builder that came from the tree, so that {@link #readFields}
+         * can restore them. The code, constructor and nested functions are left to the evaluator,
+         * and the security controller and domain are not written, since they belong to the code
+         * that reads the fields back.
+         */
+        public void writeFields(DataOutput out) throws IOException {
+            out.writeInt(paramAndVarNames.length);
+            for (int i = 0; i != paramAndVarNames.length; ++i) {
+                out.writeUTF(paramAndVarNames[i]);
+                out.writeBoolean(paramIsConst[i]);
+            }
+            out.writeBoolean(isStrict);
+            out.writeBoolean(isScript);
+            out.writeBoolean(isTopLevel);
+            out.writeBoolean(isES6Generator);
+            out.writeBoolean(isShorthand);
+            out.writeBoolean(hasPrototype);
+            out.writeBoolean(hasLexicalThis);
+            out.writeBoolean(isEvalFunction);
+            out.writeBoolean(hasRestArg);
+            writeNullableString(sourceFile, out);
+            out.writeBoolean(rawSource != null);
+            out.writeInt(rawSourceStart);
+            out.writeInt(rawSourceEnd);
+            writeNullableString(name, out);
+            out.writeInt(languageVersion);
+            out.writeInt(paramAndVarCount);
+            out.writeInt(paramCount);
+            out.writeInt(arity);
+            out.writeBoolean(hasDefaultParameters);
+            out.writeBoolean(requiresActivationFrame);
+            out.writeBoolean(requiresArgumentObject);
+            out.writeBoolean(declaredAsFunctionExpression);
+            out.writeInt(functionType);
+        }
+
+        /**
+         * Read the fields written by {@link #writeFields}.
+         *
+         * @param rawSource the source that the fields were compiled from
+         */
+        public void readFields(DataInput in, String rawSource) throws IOException {
+            int count = in.readInt();
+            paramAndVarNames = new String[count];
+            paramIsConst = new boolean[count];
+            for (int i = 0; i != count; ++i) {
+                paramAndVarNames[i] = in.readUTF();
+                paramIsConst[i] = in.readBoolean();
+            }
+            isStrict = in.readBoolean();
+            isScript = in.readBoolean();
+            isTopLevel = in.readBoolean();
+            isES6Generator = in.readBoolean();
+            isShorthand = in.readBoolean();
+            hasPrototype = in.readBoolean();
+            hasLexicalThis = in.readBoolean();
+            isEvalFunction = in.readBoolean();
+            hasRestArg = in.readBoolean();
+            sourceFile = readNullableString(in);
+            this.rawSource = in.readBoolean() ? rawSource : null;
+            rawSourceStart = in.readInt();
+            rawSourceEnd = in.readInt();
+            name = readNullableString(in);
+            languageVersion = in.readInt();
+            paramAndVarCount = in.readInt();
+            paramCount = in.readInt();
+            arity = in.readInt();
+            hasDefaultParameters = in.readBoolean();
+            requiresActivationFrame = in.readBoolean();
+            requiresArgumentObject = in.readBoolean();
+            declaredAsFunctionExpression = in.readBoolean();
+            functionType = in.readInt();
+        }
+
+        private static void writeNullableString(String s, DataOutput out) throws IOException {
+            out.writeBoolean(s != null);
+            if (s != null) {
+                out.writeUTF(s);
+            }
+        }
+
+        private static String readNullableString(DataInput in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
     }
 }
@@ -9,7 +9,8 @@ import org.mozilla.javascript.debug.DebuggableScript;
  * home object required for super calls, and mutable properties held on the function object itself.
  */
 public class JSFunction extends BaseFunction implements ScriptOrFn<JSFunction> {
-    private final JSDescriptor<JSFunction> descriptor;
+    // Only replaced once, when a function whose body is compiled lazily is first called
+    private JSDescriptor<JSFunction> descriptor;
     private final Scriptable lexicalThis;
     private final Scriptable homeObject;
 
@@ -55,9 +56,18 @@ public class JSFunction extends BaseFunction implements ScriptOrFn<JSFunction> {
         return descriptor;
     }
 
+    /**
+     * Replace the descriptor with the full descriptor of the same function, once its body has been
+     * compiled. See {@link LazyFunctionCode}.
+     */
+    void setDescriptor(JSDescriptor<JSFunction> descriptor) {
+        this.descriptor = descriptor;
+    }
+
     @Override
     final String decompile(int indent, EnumSet<DecompilerFlag> flags) {
-        return descriptor.getRawSource();
+        String source = descriptor.getRawSource();
+        return source != null ? source : super.decompile(indent, flags);
     }
 
     public boolean isShorthand() {
@@ -0,0 +1,189 @@
+/* -*- Mode: java; tab-width: 8; indent-tabs-mode: nil; c-basic-offset: 4 -*-
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.mozilla.classfile.ClassFileWriter.ClassSizeException;
+import org.mozilla.javascript.Context.EvaluationMethod;
+import org.mozilla.javascript.ast.FunctionNode;
+import org.mozilla.javascript.ast.ScriptNode;
+
+/**
+ * The code of a function whose body was left out when the script that contains it was compiled, as
+ * selected by {@link CompilerEnvirons#setLazyFunctionBodies(boolean)}. When the function is first
+ * called its source is parsed again and compiled by itself, in the same way as the script was, and
+ * the function object is given the descriptor of the result so that later calls go straight to the
+ * compiled code. The result is kept here, so other function objects created from the same
+ * definition only have to switch descriptors.
+ *
+ * <p>The function is compiled as a script that only holds the function, and the code of the
+ * function is then taken from it. Names in the body that refer to variables of the enclosing code
+ * are therefore looked up in the scope chain when the function runs, rather than being resolved
+ * when it is compiled.
+ */
+public final class LazyFunctionCode extends JSCode<JSFunction> {
+
+    /** The source and settings shared by all the lazy functions of one script. */
+    public static final class Origin {
+        private final String source;
+        private final CompilerEnvirons compilerEnv;
+
+        public Origin(String source, CompilerEnvirons compilerEnv) {
+            this.source = source;
+            // Take a copy, since the environment may be changed once the script is compiled
+            this.compilerEnv = new CompilerEnvirons(compilerEnv);
+            this.compilerEnv.setGenerateLoopEntries(false);
+        }
+    }
+
+    /** Records where the function is in the source of the script. */
+    public static final class Builder extends JSCode.Builder<JSFunction> {
+        private final Origin origin;
+        private final int start;
+        private final int end;
+        private final int lineno;
+
+        public Builder(Origin origin, FunctionNode fn) {
+            this(origin, fn.getRawSourceStart(), fn.getRawSourceEnd(), fn.getLineno());
+        }
+
+        private Builder(Origin origin, int start, int end, int lineno) {
+            this.origin = origin;
+            this.start = start;
+            this.end = end;
+            this.lineno = lineno;
+        }
+
+        @Override
+        public JSCode<JSFunction> build() {
+            return new LazyFunctionCode(origin, start, end, lineno);
+        }
+
+        /** Write the position of the function, so that {@link #read} can restore it. */
+        public void write(DataOutput out) throws IOException {
+            out.writeInt(start);
+            out.writeInt(end);
+            out.writeInt(lineno);
+        }
+
+        /** Read a builder written by {@link #write} for a function in the source of the origin. */
+        public static Builder read(DataInput in, Origin origin) throws IOException {
+            int start = in.readInt();
+            int end = in.readInt();
+            int lineno = in.readInt();
+            if (start < 0 || end < start || end > origin.source.length()) {
+                throw new IOException("Bad lazy function bounds " + start + ".." + end);
+            }
+            return new Builder(origin, start, end, lineno);
+        }
+    }
+
+    private final Origin origin;
+    private final int start;
+    private final int end;
+    private final int lineno;
+    private volatile JSDescriptor<JSFunction> compiled;
+
+    private LazyFunctionCode(Origin origin, int start, int end, int lineno) {
+        this.origin = origin;
+        this.start = start;
+        this.end = end;
+        this.lineno = lineno;
+    }
+
+    @Override
+    public Object execute(
+            Context cx,
+            JSFunction f,
+            Object newTarget,
+            VarScope scope,
+            Object thisObj,
+            Object[] args) {
+        JSDescriptor<JSFunction> desc = install(cx, f);
+        JSCode<JSFunction> code =
+                Undefined.isUndefined(newTarget) ? desc.getCode() : desc.getConstructor();
+        return code.execute(cx, f, newTarget, scope, thisObj, args);
+    }
+
+    @Override
+    public Object resume(
+            Context cx, JSFunction f, Object state, VarScope scope, int operation, Object value) {
+        return install(cx, f).getCode().resume(cx, f, state, scope, operation, value);
+    }
+
+    /**
+     * Compile the function if it has not been compiled yet, and give the function object the full
+     * descriptor.
+     */
+    JSDescriptor<JSFunction> install(Context cx, JSFunction f) {
+        JSDescriptor<JSFunction> desc = compiled;
+        if (desc == null) {
+            synchronized (this) {
+                desc = compiled;
+                if (desc == null) {
+                    desc = compile(cx, f.getDescriptor());
+                    compiled = desc;
+                }
+            }
+        }
+        f.setDescriptor(desc);
+        return desc;
+    }
+
+    private JSDescriptor<JSFunction> compile(Context cx, JSDescriptor<JSFunction> lazy) {
+        CompilerEnvirons compilerEnv = new CompilerEnvirons(origin.compilerEnv);
+        // The function was strict if the code around it was, and any warnings in it were
+        // reported when the script was compiled
+        compilerEnv.setStrictMode(lazy.isStrict());
+        compilerEnv.setReportWarningAsError(false);
+
+        String source = origin.source.substring(start, end);
+        if (lazy.getFunctionType() == FunctionNode.FUNCTION_EXPRESSION) {
+            // In parentheses it stays an expression, and is not left out again
+            source = "(" + source + ")";
+        }
+        String sourceName = lazy.getSourceName();
+        Object securityDomain = lazy.getSecurityDomain();
+        ErrorReporter reporter = new TieredCompiler.SilentErrorReporter();
+
+        EvaluationMethod method = compilerEnv.getEvaluationMethod();
+        Evaluator evaluator = method.createEvaluator();
+        CompilationResult<JSScript> result;
+        try {
+            ScriptNode tree = cx.parse(source, sourceName, lineno, compilerEnv, reporter, false);
+            try {
+                result = evaluator.compileScript(compilerEnv, tree, source);
+            } catch (ClassSizeException e) {
+                // Fall back to the interpreter, as for a whole script that is too big
+                tree = cx.parse(source, sourceName, lineno, compilerEnv, reporter, false);
+                method = EvaluationMethod.Interpreter;
+                evaluator = method.createEvaluator();
+                result = evaluator.compileScript(compilerEnv, tree, source);
+                cx.getFactory().getCompilationStats().fellBackToInterpreter();
+            }
+        } catch (EvaluatorException e) {
+            // An error that is only found when the body is compiled is reported on the call, as
+            // a SyntaxError in the same way as one in code passed to eval
+            throw ScriptRuntime.constructError(
+                    "SyntaxError",
+                    e.details(),
+                    e.sourceName(),
+                    e.lineNumber(),
+                    e.lineSource(),
+                    e.columnNumber());
+        }
+        JSScript script = (JSScript) evaluator.createScriptObject(result, securityDomain);
+        JSDescriptor<JSScript> desc = script.getDescriptor();
+        if (method == EvaluationMethod.Tiered && EvaluationMethod.Compiler.isValid()) {
+            new TieredCompiler(source, sourceName, lineno, securityDomain, compilerEnv, false, null)
+                    .attach(desc);
+        }
+        return desc.getFunction(0);
+    }
+}
@@ -721,6 +721,19 @@ public class NativeArray extends ScriptableObject implements List {
         return length;
     }
 
+    /**
+     * Return the element at the specified index if it is stored in the dense part of this array,
+     * or NOT_FOUND otherwise. Unlike {@link #get(int, Scriptable)} this never looks anywhere else,
+     * so NOT_FOUND does not mean that there is no such element, only that the caller must look it
+     * up the regular way.
+     */
+    public Object getDenseElement(int index) {
+        if (denseOnly && dense != null && index >= 0 && index < dense.length) {
+            return dense[index];
+        }
+        return NOT_FOUND;
+    }
+
     /**
      * @deprecated Use {@link #getLength()} instead.
      */
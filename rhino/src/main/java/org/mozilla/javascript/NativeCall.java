@@ -41,6 +41,7 @@ public final class NativeCall extends DeclarationScope {
         // initialize values of arguments
         int paramAndVarCount = function.getParamAndVarCount();
         int paramCount = function.getParamCount();
+        vars = paramAndVarCount == 0 ? ScriptRuntime.emptyArgs : new Object[paramAndVarCount];
         if (paramAndVarCount != 0) {
             if (argsHasRest) {
                 Object[] vals;
@@ -52,19 +53,14 @@ public final class NativeCall extends DeclarationScope {
                 }
 
                 for (int i = 0; i < paramCount; ++i) {
-                    String name = function.getParamOrVarName(i);
                     Object val = i < args.length ? args[i] : Undefined.instance;
-                    defineProperty(name, val, PERMANENT);
+                    defineVar(i, val);
                 }
-                defineProperty(
-                        function.getParamOrVarName(paramCount),
-                        cx.newArray(scope, vals),
-                        PERMANENT);
+                defineVar(paramCount, cx.newArray(scope, vals));
             } else {
                 for (int i = 0; i < paramCount; ++i) {
-                    String name = function.getParamOrVarName(i);
                     Object val = i < args.length ? args[i] : Undefined.instance;
-                    defineProperty(name, val, PERMANENT);
+                    defineVar(i, val);
                 }
             }
         }
@@ -81,20 +77,87 @@ public final class NativeCall extends DeclarationScope {
                 if (!super.has(name, this)) {
                     if (function.getParamOrVarConst(i)) {
                         defineProperty(name, Undefined.instance, CONST);
-                    } else if (function.hasFunctionNamed(name)) {
-                        defineProperty(name, Undefined.instance, PERMANENT);
+                    } else {
+                        // Functions declared in the body are stored when the body starts
+                        defineVar(i, Undefined.instance);
                     }
                 }
             }
         }
     }
 
+    /**
+     * Define the parameter or variable as a permanent property whose value is kept in {@link
+     * #vars}, so that compiled code that knows its index can get at it without a lookup.
+     */
+    private void defineVar(int index, Object value) {
+        String name = function.getParamOrVarName(index);
+        Slot<VarScope> slot = getMap().query(name, 0);
+        if (slot != null) {
+            // A parameter name may be repeated, and the last one wins
+            slot.setValue(value, this, this);
+            return;
+        }
+        vars[index] = value;
+        getMap().compute(
+                this, name, 0, (k, i, existing, map, owner) -> new VarSlot(name, index, vars));
+    }
+
     public Scriptable getHomeObject() {
         return function.getHomeObject();
     }
 
     final JSFunction function;
     final Object[] originalArgs;
+    // The values of the parameters and variables, by index, for those that have a VarSlot
+    final Object[] vars;
 
     transient NativeCall parentActivationCall;
+
+    /** A permanent data property whose value is kept in the vars array of the activation. */
+    private static final class VarSlot extends Slot<VarScope> {
+        @Serial private static final long serialVersionUID = 2807357126489618834L;
+
+        private final int varIndex;
+        private final Object[] vars;
+
+        VarSlot(String name, int varIndex, Object[] vars) {
+            super(name, 0, PERMANENT);
+            this.varIndex = varIndex;
+            this.vars = vars;
+        }
+
+        private VarSlot(VarSlot oldSlot) {
+            super(oldSlot);
+            this.varIndex = oldSlot.varIndex;
+            this.vars = oldSlot.vars;
+        }
+
+        @Override
+        VarSlot copySlot() {
+            var newSlot = new VarSlot(this);
+            newSlot.next = null;
+            newSlot.orderedNext = null;
+            return newSlot;
+        }
+
+        @Override
+        public boolean setValue(Object value, VarScope owner, VarScope start, boolean isThrow) {
+            if ((getAttributes() & ScriptableObject.READONLY) != 0 || owner != start) {
+                return super.setValue(value, owner, start, isThrow);
+            }
+            vars[varIndex] = value;
+            return true;
+        }
+
+        @Override
+        public Object getValue(VarScope start) {
+            return vars[varIndex];
+        }
+
+        @Override
+        ScriptableObject.DescriptorInfo getPropertyDescriptor(Context cx, VarScope scope) {
+            return ScriptableObject.buildDataDescriptor(vars[varIndex], getAttributes());
+        }
+    }
 }
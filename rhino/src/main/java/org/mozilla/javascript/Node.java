@@ -7,6 +7,7 @@
 package org.mozilla.javascript;
 
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -70,7 +71,8 @@ public class Node implements Iterable<Node> {
             SUPER_PROPERTY_ACCESS = 31,
             NUMBER_OF_SPREAD = 32,
             OBJECT_REST_PROP = 33, // marks a CALL node as object rest operation
-            LAST_PROP = OBJECT_REST_PROP,
+            CLOSURE_VAR_PROP = 34, // (depth << 16) | index of a variable in an outer activation
+            LAST_PROP = CLOSURE_VAR_PROP,
             FIRST_PROP = FUNCTION_PROP;
 
     // values of ISNUMBER_PROP to specify
@@ -87,13 +89,6 @@ public class Node implements Iterable<Node> {
             ATTRIBUTE_FLAG = 0x2, // x.@y or x..@y
             DESCENDANTS_FLAG = 0x4; // x..y or x..@i
 
-    private static class PropListItem {
-        PropListItem next;
-        int type;
-        int intValue;
-        Object objectValue;
-    }
-
     public Node(int nodeType) {
         type = nodeType;
     }
@@ -459,6 +454,8 @@ public class Node implements Iterable<Node> {
                 return "number_of_spread";
             case OBJECT_REST_PROP:
                 return "object_rest_prop";
+            case CLOSURE_VAR_PROP:
+                return "closure_var";
 
             default:
                 Kit.codeBug();
@@ -466,80 +463,84 @@ public class Node implements Iterable<Node> {
         }
     }
 
-    private PropListItem lookupProperty(int propType) {
-        PropListItem x = propListHead;
-        while (x != null && propType != x.type) {
-            x = x.next;
+    private int indexOfProp(int propType) {
+        Object[] p = props;
+        if (p != null) {
+            for (int i = 0; i < p.length; i += 2) {
+                if ((Integer) p[i] == propType) {
+                    return i;
+                }
+            }
         }
-        return x;
+        return -1;
     }
 
-    private PropListItem ensureProperty(int propType) {
-        PropListItem item = lookupProperty(propType);
-        if (item == null) {
-            item = new PropListItem();
-            item.type = propType;
-            item.next = propListHead;
-            propListHead = item;
+    private void setProp(int propType, Object value) {
+        int i = indexOfProp(propType);
+        if (i >= 0) {
+            props[i + 1] = value;
+            return;
+        }
+        Object[] p = props;
+        if (p == null) {
+            p = new Object[2];
+        } else {
+            p = Arrays.copyOf(p, p.length + 2);
         }
-        return item;
+        p[p.length - 2] = propType;
+        p[p.length - 1] = value;
+        props = p;
     }
 
     public void removeProp(int propType) {
-        PropListItem x = propListHead;
-        if (x != null) {
-            PropListItem prev = null;
-            while (x.type != propType) {
-                prev = x;
-                x = x.next;
-                if (x == null) {
-                    return;
-                }
-            }
-            if (prev == null) {
-                propListHead = x.next;
+        int i = indexOfProp(propType);
+        if (i >= 0) {
+            Object[] p = props;
+            if (p.length == 2) {
+                props = null;
             } else {
-                prev.next = x.next;
+                Object[] tmp = new Object[p.length - 2];
+                System.arraycopy(p, 0, tmp, 0, i);
+                System.arraycopy(p, i + 2, tmp, i, p.length - i - 2);
+                props = tmp;
             }
         }
     }
 
     public Object getProp(int propType) {
-        PropListItem item = lookupProperty(propType);
-        if (item == null) {
+        int i = indexOfProp(propType);
+        if (i < 0) {
             return null;
         }
-        return item.objectValue;
+        return props[i + 1];
     }
 
     public int getIntProp(int propType, int defaultValue) {
-        PropListItem item = lookupProperty(propType);
-        if (item == null) {
+        int i = indexOfProp(propType);
+        if (i < 0) {
             return defaultValue;
         }
-        return item.intValue;
+        return (Integer) props[i + 1];
     }
 
     public int getExistingIntProp(int propType) {
-        PropListItem item = lookupProperty(propType);
-        if (item == null) {
-            Kit.codeBug();
+        int i = indexOfProp(propType);
+        if (i < 0) {
+            throw Kit.codeBug();
         }
-        return item.intValue;
+        return (Integer) props[i + 1];
     }
 
     public void putProp(int propType, Object prop) {
         if (prop == null) {
             removeProp(propType);
         } else {
-            PropListItem item = ensureProperty(propType);
-            item.objectValue = prop;
+            setProp(propType, prop);
         }
     }
 
     public void putIntProp(int propType, int prop) {
-        PropListItem item = ensureProperty(propType);
-        item.intValue = prop;
+        setProp(propType, prop);
     }
 
     /**
@@ -1153,8 +1154,9 @@ public class Node implements Iterable<Node> {
                 sb.append(lineno);
             }
 
-            for (PropListItem x = propListHead; x != null; x = x.next) {
-                int type = x.type;
+            for (int p = 0; props != null && p < props.length; p += 2) {
+                int type = (Integer) props[p];
+                Object value = props[p + 1];
                 sb.append(" [");
                 sb.append(propToString(type));
                 sb.append(": ");
@@ -1166,7 +1168,7 @@ public class Node implements Iterable<Node> {
                         sb.append("last local block");
                         break;
                     case ISNUMBER_PROP:
-                        switch (x.intValue) {
+                        switch ((Integer) value) {
                             case BOTH:
                                 sb.append("both");
                                 break;
@@ -1181,7 +1183,7 @@ public class Node implements Iterable<Node> {
                         }
                         break;
                     case SPECIALCALL_PROP:
-                        switch (x.intValue) {
+                        switch ((Integer) value) {
                             case SPECIALCALL_EVAL:
                                 sb.append("eval");
                                 break;
@@ -1192,7 +1194,7 @@ public class Node implements Iterable<Node> {
                         break;
                     case OBJECT_IDS_PROP:
                         {
-                            Object[] a = (Object[]) x.objectValue;
+                            Object[] a = (Object[]) value;
                             sb.append("[");
                             for (int i = 0; i < a.length; i++) {
                                 if (a[i] != null) sb.append(a[i].toString());
@@ -1202,12 +1204,7 @@ public class Node implements Iterable<Node> {
                             break;
                         }
                     default:
-                        Object obj = x.objectValue;
-                        if (obj != null) {
-                            sb.append(obj.toString());
-                        } else {
-                            sb.append(String.valueOf(x.intValue));
-                        }
+                        sb.append(value);
                         break;
                 }
                 sb.append(']');
@@ -1288,9 +1285,9 @@ public class Node implements Iterable<Node> {
     private int column = -1;
 
     /**
-     * Linked list of properties. Since vast majority of nodes would have no more then 2 properties,
-     * linked list saves memory and provides fast lookup. If this does not holds, propListHead can
-     * be replaced by UintMap.
+     * Properties as pairs of the property type and its value, with int values boxed. Since the vast
+     * majority of nodes have no more than 2 properties, a small array takes less memory than a list
+     * of entries and is as fast to search.
      */
-    protected PropListItem propListHead;
+    private Object[] props;
 }
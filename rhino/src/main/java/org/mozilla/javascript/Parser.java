@@ -629,13 +629,12 @@ public class Parser {
     }
 
     /**
-     * Builds a parse tree from the given sourcereader.
+     * Builds a parse tree from the given source reader. The source is read as it is scanned, so
+     * only a window of it around the current line is held in memory.
      *
      * @see #parse(String,String,int)
      * @throws IOException if the {@link Reader} encounters an error
-     * @deprecated use parse(String, String, int) instead
      */
-    @Deprecated
     public AstRoot parse(Reader sourceReader, String sourceURI, int lineno) throws IOException {
         if (parseFinished) throw new IllegalStateException("parser reused");
         if (compilerEnv.isIdeMode()) {
@@ -0,0 +1,225 @@
+package org.mozilla.javascript;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * An inline cache entry for a named property access made by the interpreter. Each InterpreterData
+ * has a side table of these, indexed by the pc of the instruction that makes the access, which
+ * remembers where the property was found the last time the instruction ran. As long as the next
+ * object that the instruction sees has the same class and {@link Shape}, the property can be read
+ * straight from the cached offset rather than looked up by name.
+ *
+ * <p>Entries are immutable, so a table may be shared between threads that run the same code: a
+ * miss simply replaces the entry. An instruction that keeps missing is marked as megamorphic and
+ * is not cached any more.
+ */
+final class PropertyCache {
+
+    /** After this many misses, an instruction stops trying to cache. */
+    private static final int MAX_MISSES = 8;
+
+    private static final PropertyCache MEGAMORPHIC =
+            new PropertyCache(null, null, null, null, -1, MAX_MISSES);
+
+    private final Class<?> cls;
+    private final Shape shape;
+    // If the property was found on the prototype instead of the object itself
+    private final WeakReference<Scriptable> protoRef;
+    private final Shape protoShape;
+    private final int offset;
+    private final int misses;
+
+    private PropertyCache(
+            Class<?> cls,
+            Shape shape,
+            WeakReference<Scriptable> protoRef,
+            Shape protoShape,
+            int offset,
+            int misses) {
+        this.cls = cls;
+        this.shape = shape;
+        this.protoRef = protoRef;
+        this.protoShape = protoShape;
+        this.offset = offset;
+        this.misses = misses;
+    }
+
+    /** Implement the GETPROP instruction, using the cache if possible. */
+    static Object getObjectProp(
+            InterpreterData<?> idata,
+            int pc,
+            Object obj,
+            String name,
+            Context cx,
+            VarScope scope) {
+        Object value = getCached(idata, pc, obj, name);
+        if (value == Scriptable.NOT_FOUND) {
+            return ScriptRuntime.getObjectProp(obj, name, cx, scope);
+        }
+        return value;
+    }
+
+    /** Implement the GETPROPNOWARN instruction, using the cache if possible. */
+    static Object getObjectPropNoWarn(
+            InterpreterData<?> idata,
+            int pc,
+            Object obj,
+            String name,
+            Context cx,
+            VarScope scope) {
+        Object value = getCached(idata, pc, obj, name);
+        if (value == Scriptable.NOT_FOUND) {
+            return ScriptRuntime.getObjectPropNoWarn(obj, name, cx, scope);
+        }
+        return value;
+    }
+
+    /** Implement the PROP_AND_THIS instructions, using the cache if possible. */
+    static ScriptRuntime.LookupResult getPropAndThis(
+            InterpreterData<?> idata,
+            int pc,
+            Object obj,
+            String name,
+            Context cx,
+            VarScope scope,
+            boolean isOptionalChainingCall) {
+        Object value = getCached(idata, pc, obj, name);
+        if (value == Scriptable.NOT_FOUND) {
+            return isOptionalChainingCall
+                    ? ScriptRuntime.getPropAndThisOptional(obj, name, cx, scope)
+                    : ScriptRuntime.getPropAndThis(obj, name, cx, scope);
+        }
+        if (isOptionalChainingCall
+                && !(value instanceof Callable)
+                && (value == null || Undefined.isUndefined(value))) {
+            return null;
+        }
+        return new ScriptRuntime.LookupResult(value, (Scriptable) obj, name);
+    }
+
+    /** Implement the SETPROP instruction, using the cache if possible. */
+    static Object setObjectProp(
+            InterpreterData<?> idata,
+            int pc,
+            Object obj,
+            String name,
+            Object value,
+            Context cx,
+            VarScope scope) {
+        if (obj instanceof ScriptableObject) {
+            ScriptableObject sobj = (ScriptableObject) obj;
+            PropertyCache[] caches = idata.propertyCaches;
+            PropertyCache entry = caches == null ? null : caches[pc];
+            if (entry != null && entry.protoRef == null && entry.matches(sobj)) {
+                if (ShapedAccess.setValue(sobj, entry.offset, value)) {
+                    return value;
+                }
+            } else if (entry != MEGAMORPHIC) {
+                // Only cache writes to existing properties, since anything else changes the shape
+                Shape s = ShapedAccess.getShape(sobj);
+                if (s != null) {
+                    int off = s.getOffset(name);
+                    if (off >= 0) {
+                        update(idata, pc, entry, sobj, s, null, null, off);
+                    }
+                }
+            }
+        }
+        return ScriptRuntime.setObjectProp(obj, name, value, cx, scope);
+    }
+
+    /**
+     * Return the value of the property from the cache, updating the cache on a miss. Return
+     * NOT_FOUND if the property could not be found this way, in which case the caller must do a
+     * regular lookup.
+     */
+    private static Object getCached(InterpreterData<?> idata, int pc, Object obj, String name) {
+        if (!(obj instanceof ScriptableObject)) {
+            return Scriptable.NOT_FOUND;
+        }
+        ScriptableObject sobj = (ScriptableObject) obj;
+        PropertyCache[] caches = idata.propertyCaches;
+        PropertyCache entry = caches == null ? null : caches[pc];
+        if (entry != null) {
+            if (entry.protoRef == null) {
+                if (entry.matches(sobj)) {
+                    return ShapedAccess.getValue(sobj, entry.offset, sobj);
+                }
+            } else if (entry.matches(sobj)) {
+                Scriptable proto = sobj.getPrototype();
+                if (proto != null
+                        && proto == entry.protoRef.get()
+                        && ShapedAccess.getShapeUnchecked((ScriptableObject) proto)
+                                == entry.protoShape) {
+                    return ShapedAccess.getValue((ScriptableObject) proto, entry.offset, sobj);
+                }
+            }
+            if (entry == MEGAMORPHIC) {
+                return Scriptable.NOT_FOUND;
+            }
+        }
+        return miss(idata, pc, entry, sobj, name);
+    }
+
+    private static Object miss(
+            InterpreterData<?> idata,
+            int pc,
+            PropertyCache entry,
+            ScriptableObject sobj,
+            String name) {
+        Shape s = ShapedAccess.getShape(sobj);
+        if (s == null) {
+            return Scriptable.NOT_FOUND;
+        }
+        int off = s.getOffset(name);
+        if (off >= 0) {
+            update(idata, pc, entry, sobj, s, null, null, off);
+            return ShapedAccess.getValue(sobj, off, sobj);
+        }
+        Scriptable proto = sobj.getPrototype();
+        Shape ps = ShapedAccess.getShape(proto);
+        if (ps == null) {
+            return Scriptable.NOT_FOUND;
+        }
+        off = ps.getOffset(name);
+        if (off < 0) {
+            return Scriptable.NOT_FOUND;
+        }
+        update(idata, pc, entry, sobj, s, proto, ps, off);
+        return ShapedAccess.getValue((ScriptableObject) proto, off, sobj);
+    }
+
+    private static void update(
+            InterpreterData<?> idata,
+            int pc,
+            PropertyCache oldEntry,
+            ScriptableObject obj,
+            Shape shape,
+            Scriptable proto,
+            Shape protoShape,
+            int offset) {
+        PropertyCache[] caches = idata.propertyCaches;
+        if (caches == null) {
+            caches = new PropertyCache[idata.itsICode.length];
+            idata.propertyCaches = caches;
+        }
+        int misses = oldEntry == null ? 0 : oldEntry.misses + 1;
+        if (misses >= MAX_MISSES) {
+            caches[pc] = MEGAMORPHIC;
+        } else {
+            caches[pc] =
+                    new PropertyCache(
+                            obj.getClass(),
+                            shape,
+                            proto == null ? null : new WeakReference<>(proto),
+                            protoShape,
+                            offset,
+                            misses);
+        }
+    }
+
+    /** Return whether the object has the class and shape that this entry was created for. */
+    private boolean matches(ScriptableObject obj) {
+        return obj.getClass() == cls && ShapedAccess.getShapeUnchecked(obj) == shape;
+    }
+}
@@ -20,6 +20,8 @@ import org.mozilla.javascript.config.RhinoConfig;
 /** The class of exceptions thrown by the JavaScript engine. */
 public abstract class RhinoException extends RuntimeException {
     private static final Pattern JAVA_STACK_PATTERN = Pattern.compile("_c_(.*)_\\d+");
+    // A part of a body that was split into several methods, see BodyCodegen.planSplitParts()
+    private static final Pattern SPLIT_PART_PATTERN = Pattern.compile("(_c_.*_\\d+)_part\\d+");
 
     RhinoException() {
         Evaluator e = Context.createInterpreter();
@@ -269,6 +271,7 @@ public abstract class RhinoException extends RuntimeException {
         StackTraceElement[] stack = getStackTrace();
         int count = 0;
         boolean printStarted = (hideFunction == null);
+        boolean inSplitPart = false;
 
         // Pattern to recover function name from java method name -
         // see Codegen.getBodyMethodName()
@@ -279,6 +282,16 @@ public abstract class RhinoException extends RuntimeException {
                     && e.getLineNumber() > -1
                     && (fileName == null || !fileName.endsWith(".java"))) {
                 String methodName = e.getMethodName();
+                if (inSplitPart) {
+                    // This is the method that called the part, and the part had the position
+                    inSplitPart = false;
+                    continue;
+                }
+                Matcher part = SPLIT_PART_PATTERN.matcher(methodName);
+                if (part.matches()) {
+                    methodName = part.group(1);
+                    inSplitPart = true;
+                }
                 Matcher match = JAVA_STACK_PATTERN.matcher(methodName);
                 // the method representing the main script is always "_c_script_0" -
                 // at least we hope so
@@ -2,6 +2,7 @@ package org.mozilla.javascript;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.function.Consumer;
 import org.mozilla.javascript.sourcemap.SourceMapper;
 
@@ -14,7 +15,8 @@ import org.mozilla.javascript.sourcemap.SourceMapper;
  * @see FunctionCompileSpec
  */
 public final class ScriptCompileSpec {
-    private final String source;
+    private String source;
+    private Reader reader;
     private final String sourceName;
     private final int lineno;
     private final Object securityDomain;
@@ -46,14 +48,47 @@ public final class ScriptCompileSpec {
         return new Builder(source);
     }
 
+    /**
+     * Start a spec for source that is read from {@code reader}. The reader is not read until the
+     * script is compiled, and if the compiler does not need to keep the text of the source, it is
+     * parsed as it is read rather than being read into a string first.
+     */
     public static Builder fromReader(Reader reader) throws IOException {
-        return new Builder(Kit.readReader(reader));
+        return new Builder(reader);
     }
 
-    public String getSource() {
+    /**
+     * Return the source. For a spec made with {@link #fromReader(Reader)} this reads the whole
+     * reader, if it has not been read yet.
+     *
+     * @throws UncheckedIOException if the reader encounters an error
+     * @throws IllegalStateException if the source was already parsed straight from the reader
+     */
+    public synchronized String getSource() {
+        if (source == null && reader != null) {
+            try {
+                source = Kit.readReader(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                reader = null;
+            }
+        } else if (source == null) {
+            throw new IllegalStateException("source was read from a stream");
+        }
         return source;
     }
 
+    /**
+     * Take the reader, if the spec was made with one that has not been read yet, so that the
+     * source can be parsed as it is read. The source is no longer available afterwards.
+     */
+    synchronized Reader takeSourceReader() {
+        Reader r = reader;
+        reader = null;
+        return r;
+    }
+
     public String getSourceName() {
         return sourceName;
     }
@@ -84,6 +119,7 @@ public final class ScriptCompileSpec {
 
     public static final class Builder {
         private final String source;
+        private final Reader reader;
         private String sourceName;
         private int lineno = 0;
         private Object securityDomain;
@@ -94,6 +130,12 @@ public final class ScriptCompileSpec {
 
         private Builder(String source) {
             this.source = source;
+            this.reader = null;
+        }
+
+        private Builder(Reader reader) {
+            this.source = null;
+            this.reader = reader;
         }
 
         public Builder sourceName(String sourceName) {
@@ -134,15 +176,18 @@ public final class ScriptCompileSpec {
 
         public ScriptCompileSpec build() {
             int normalizedLineno = Math.max(lineno, 0);
-            return new ScriptCompileSpec(
-                    source,
-                    sourceName,
-                    normalizedLineno,
-                    securityDomain,
-                    compiler,
-                    compilationErrorReporter,
-                    compilerEnvironsProcessor,
-                    sourceMapper);
+            ScriptCompileSpec spec =
+                    new ScriptCompileSpec(
+                            source,
+                            sourceName,
+                            normalizedLineno,
+                            securityDomain,
+                            compiler,
+                            compilationErrorReporter,
+                            compilerEnvironsProcessor,
+                            sourceMapper);
+            spec.reader = reader;
+            return spec;
         }
     }
 }
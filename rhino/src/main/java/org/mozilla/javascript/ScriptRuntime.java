@@ -4153,6 +4153,15 @@ public class ScriptRuntime {
             number = toNumeric(value);
         }
 
+        Number result = incrDecrNumber(number, incrDecrMask);
+        target.put(id, target, result);
+        if (post) {
+            return number;
+        }
+        return result;
+    }
+
+    private static Number incrDecrNumber(Number number, int incrDecrMask) {
         Number result;
         if (number instanceof BigInteger) {
             if ((incrDecrMask & Node.DECR_FLAG) == 0) {
@@ -4173,11 +4182,6 @@ public class ScriptRuntime {
                 result = number.doubleValue() - 1.0;
             }
         }
-
-        target.put(id, target, result);
-        if (post) {
-            return number;
-        }
         return result;
     }
 
@@ -5095,6 +5099,40 @@ public class ScriptRuntime {
         return new NativeCall(funObj, cx, scope, args, true, argsHasRest, requiresArgumentObject);
     }
 
+    /**
+     * Return the value of a variable of the function activation that is {@code depth} scopes up the
+     * chain from the scope. The compiler only generates calls to this when it knows that every
+     * scope in between is a function activation, and that none of them can have a variable with
+     * the same name.
+     */
+    public static Object getClosureVar(VarScope scope, int depth, int index) {
+        return closureActivation(scope, depth).vars[index];
+    }
+
+    /** Set a variable found in the same way as {@link #getClosureVar}, and return the value. */
+    public static Object setClosureVar(Object value, VarScope scope, int depth, int index) {
+        closureActivation(scope, depth).vars[index] = value;
+        return value;
+    }
+
+    /** Increment or decrement a variable found in the same way as {@link #getClosureVar}. */
+    public static Object closureVarIncrDecr(
+            VarScope scope, int depth, int index, int incrDecrMask) {
+        Object[] vars = closureActivation(scope, depth).vars;
+        Object value = vars[index];
+        Number number = value instanceof Number ? (Number) value : toNumeric(value);
+        Number result = incrDecrNumber(number, incrDecrMask);
+        vars[index] = result;
+        return (incrDecrMask & Node.POST_FLAG) != 0 ? number : result;
+    }
+
+    private static NativeCall closureActivation(VarScope scope, int depth) {
+        for (int i = 0; i != depth; ++i) {
+            scope = scope.getParentScope();
+        }
+        return (NativeCall) scope;
+    }
+
     public static void enterActivationFunction(Context cx, VarScope scope) {
         if (cx.topCallScope == null) throw new IllegalStateException();
         NativeCall call = (NativeCall) scope;
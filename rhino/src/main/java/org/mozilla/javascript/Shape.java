@@ -0,0 +1,189 @@
+package org.mozilla.javascript;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A Shape (sometimes called a "hidden class") describes the layout of the properties of an object
+ * that uses a {@link ShapedSlotMap}: which keys it has, and at which offset in the object's slot
+ * array each of them lives. Shapes are immutable and are shared between every object that had the
+ * same properties added in the same order, so objects created by the same constructor end up
+ * sharing a single shape rather than each carrying a hash table of their own.
+ *
+ * <p>Shapes form a tree rooted at {@link #EMPTY}. Adding a property to an object moves it from its
+ * current shape to a child shape via a "transition," which is created once and then reused by
+ * every other object that adds the same key at the same point. Transitions are weakly held so
+ * that shapes which are no longer used by any object may be collected.
+ *
+ * <p>Because two objects with the same shape store the same key at the same offset, a caller that
+ * has seen a shape before may skip the key lookup entirely and go straight to the offset. That is
+ * what makes shapes the basis for inline caching.
+ */
+public final class Shape {
+
+    /**
+     * The maximum number of properties in a shape. Objects that grow past this are usually being
+     * used as dictionaries, so we fall back to a regular slot map instead of growing the tree.
+     */
+    static final int MAX_PROPERTIES = 64;
+
+    /**
+     * The maximum number of distinct transitions out of a single shape. An object that adds a key
+     * beyond this is likely using arbitrary keys, so it stops using shapes rather than growing the
+     * tree without bound.
+     */
+    static final int MAX_TRANSITIONS = 64;
+
+    /** Below this size a linear scan of the keys is faster than hashing. */
+    private static final int LINEAR_SEARCH_SIZE = 8;
+
+    /** The root of the shape tree, with no properties. */
+    public static final Shape EMPTY = new Shape();
+
+    private final Shape parent;
+    private final Object[] keys;
+
+    // Open-addressed table of (offset + 1) indexed by key hash, only built for larger shapes
+    private final int[] table;
+
+    // Most shapes only ever have one child, so check it without locking first
+    private volatile WeakReference<Shape> lastTransition;
+
+    // Guarded by "this"
+    private Map<Object, WeakReference<Shape>> transitions;
+
+    private Shape() {
+        parent = null;
+        keys = ScriptRuntime.emptyArgs;
+        table = null;
+    }
+
+    private Shape(Shape parent, Object key) {
+        this.parent = parent;
+        int size = parent.keys.length;
+        keys = new Object[size + 1];
+        System.arraycopy(parent.keys, 0, keys, 0, size);
+        keys[size] = key;
+        table = keys.length > LINEAR_SEARCH_SIZE ? buildTable(keys) : null;
+    }
+
+    /** Return the number of properties described by this shape. */
+    public int size() {
+        return keys.length;
+    }
+
+    /** Return the shape that this one was derived from, or null for the empty shape. */
+    public Shape getParent() {
+        return parent;
+    }
+
+    /** Return the key stored at the given offset. */
+    public Object getKey(int offset) {
+        return keys[offset];
+    }
+
+    /**
+     * Return the offset at which the given key is stored by objects of this shape, or -1 if this
+     * shape does not contain the key.
+     */
+    public int getOffset(Object key) {
+        if (table == null) {
+            for (int i = keys.length - 1; i >= 0; i--) {
+                Object k = keys[i];
+                if (k == key || k.equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int mask = table.length - 1;
+        for (int i = key.hashCode() & mask; ; i = (i + 1) & mask) {
+            int entry = table[i];
+            if (entry == 0) {
+                return -1;
+            }
+            Object k = keys[entry - 1];
+            if (k == key || k.equals(key)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Return the shape that results from adding the specified key to this one. The new key will be
+     * stored at offset {@link #size()}. The result is cached so that all objects that add the same
+     * key from this shape share the same result. Return null if the shape tree should not be grown
+     * any further from here, in which case the caller must use a different representation.
+     */
+    Shape addProperty(Object key) {
+        assert getOffset(key) < 0;
+        WeakReference<Shape> last = lastTransition;
+        if (last != null) {
+            Shape child = last.get();
+            if (child != null && child.keys[keys.length].equals(key)) {
+                return child;
+            }
+        }
+        synchronized (this) {
+            if (transitions == null) {
+                transitions = new HashMap<>(4);
+            } else {
+                WeakReference<Shape> ref = transitions.get(key);
+                Shape existing = ref == null ? null : ref.get();
+                if (existing != null) {
+                    lastTransition = ref;
+                    return existing;
+                }
+                if (ref != null || transitions.size() >= MAX_TRANSITIONS) {
+                    purgeTransitions();
+                    if (transitions.size() >= MAX_TRANSITIONS) {
+                        return null;
+                    }
+                }
+            }
+            Shape child = new Shape(this, key);
+            WeakReference<Shape> ref = new WeakReference<>(child);
+            transitions.put(key, ref);
+            lastTransition = ref;
+            return child;
+        }
+    }
+
+    private void purgeTransitions() {
+        Iterator<WeakReference<Shape>> it = transitions.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().get() == null) {
+                it.remove();
+            }
+        }
+    }
+
+    private static int[] buildTable(Object[] keys) {
+        // Keep the table at most half full so that probe sequences stay short
+        int capacity = Integer.highestOneBit(keys.length * 2 - 1) << 1;
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int offset = 0; offset < keys.length; offset++) {
+            int i = keys[offset].hashCode() & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = offset + 1;
+        }
+        return table;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Shape{");
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(keys[i]);
+        }
+        return sb.append('}').toString();
+    }
+}
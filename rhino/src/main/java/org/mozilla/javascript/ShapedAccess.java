@@ -0,0 +1,129 @@
+package org.mozilla.javascript;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Static helpers used by inline caches to read and write the properties of objects that use a
+ * {@link ShapedSlotMap} without going through a key lookup. A cache records the {@link Shape} of an
+ * object along with the offset of a property within it. As long as a later object has the same
+ * class and the same shape, the same offset may be used to get straight to the slot.
+ *
+ * <p>This is only valid for classes that use the standard ScriptableObject logic to get and put
+ * named properties, because a subclass that overrides those methods might not store a property
+ * in the slot map at all. {@link #getShape(Object)} checks that, and callers must verify that the
+ * class of the object is unchanged before using {@link #getShapeUnchecked}.
+ */
+public final class ShapedAccess {
+
+    private static final Map<Class<?>, Boolean> cacheableClasses = new WeakHashMap<>();
+
+    private ShapedAccess() {}
+
+    /**
+     * Return the current shape of the object, or null if the object is not a ScriptableObject of
+     * a class that supports shape-based access, or does not currently use shapes.
+     */
+    public static Shape getShape(Object obj) {
+        if (!(obj instanceof ScriptableObject)) {
+            return null;
+        }
+        // Check the shape first since it's much cheaper than checking the class
+        Shape shape = getShapeUnchecked((ScriptableObject) obj);
+        if (shape == null || !isCacheableClass(obj.getClass())) {
+            return null;
+        }
+        return shape;
+    }
+
+    /**
+     * Return the current shape of the object, or null if it does not currently use shapes. Unlike
+     * {@link #getShape(Object)} this does not check the class of the object, so it is meant for
+     * guards that have already verified that.
+     */
+    public static Shape getShapeUnchecked(ScriptableObject obj) {
+        SlotMap<Scriptable> map = obj.getMap();
+        if (map instanceof ShapedSlotMap) {
+            return ((ShapedSlotMap<Scriptable>) map).getShape();
+        }
+        return null;
+    }
+
+    /**
+     * Return the value of the property stored at the specified offset of the holder, calling any
+     * getter with "start" as "this." The holder must still have the shape that the offset was taken
+     * from. May return NOT_FOUND, in which case the caller should fall back to a regular lookup.
+     */
+    public static Object getValue(ScriptableObject holder, int offset, Scriptable start) {
+        return ((ShapedSlotMap<Scriptable>) holder.getMap()).getSlot(offset).getValue(start);
+    }
+
+    /**
+     * Set the value of the plain data property stored at the specified offset of the object, which
+     * must still have the shape that the offset was taken from. Return false without doing
+     * anything if this is not a simple write -- for instance, because the property has a setter or
+     * is read-only, or because the object is sealed or frozen -- in which case the caller should
+     * fall back to a regular put so that the right thing happens.
+     */
+    public static boolean setValue(ScriptableObject obj, int offset, Object value) {
+        if (obj.isSealed || !obj.isExtensible()) {
+            return false;
+        }
+        Slot<Scriptable> slot = ((ShapedSlotMap<Scriptable>) obj.getMap()).getSlot(offset);
+        if (slot.getClass() != Slot.class
+                || (slot.getAttributes() & ScriptableObject.READONLY) != 0) {
+            return false;
+        }
+        slot.value = value;
+        return true;
+    }
+
+    /** Return the result of a successful "get with this" operation, as in ScriptRuntime. */
+    public static ScriptRuntime.LookupResult newLookupResult(
+            Object value, Scriptable thisObj, String name) {
+        return new ScriptRuntime.LookupResult(value, thisObj, name);
+    }
+
+    /**
+     * Return whether instances of the class store named properties only in their slot map and
+     * use the standard ScriptableObject logic to get and put them.
+     */
+    public static boolean isCacheableClass(Class<?> cls) {
+        synchronized (cacheableClasses) {
+            return cacheableClasses.computeIfAbsent(cls, ShapedAccess::checkClass);
+        }
+    }
+
+    private static boolean checkClass(Class<?> cls) {
+        if (!ScriptableObject.class.isAssignableFrom(cls)) {
+            return false;
+        }
+        for (Class<?> c = cls; c != ScriptableObject.class; c = c.getSuperclass()) {
+            if (declares(c, "get", String.class, Scriptable.class)
+                    || declares(c, "has", String.class, Scriptable.class)
+                    || declares(c, "put", String.class, Scriptable.class, Object.class)
+                    || declares(
+                            c,
+                            "putOwnProperty",
+                            String.class,
+                            Scriptable.class,
+                            Object.class,
+                            boolean.class)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean declares(Class<?> c, String name, Class<?>... params) {
+        try {
+            c.getDeclaredMethod(name, params);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        } catch (SecurityException e) {
+            // If we can't tell, then assume the worst
+            return true;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.mozilla.javascript;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class implements the SlotMap interface using a shared {@link Shape} to map keys to offsets
+ * and a flat array to hold the slots themselves. Unlike {@link EmbeddedSlotMap}, an object using
+ * this map does not carry a hash table of its own: every object that added the same properties in
+ * the same order shares the same Shape, and the per-object cost is just the slot array.
+ *
+ * <p>Shapes can only describe objects that add named properties and never remove them. As soon as
+ * an object is used in some other way -- a property is deleted, an integer index is added, or the
+ * object grows beyond {@link Shape#MAX_PROPERTIES} -- this map replaces itself on the owner with an
+ * {@link EmbeddedSlotMap} containing the same slots in the same order.
+ *
+ * <p>This map is not thread-safe and is never used when {@link
+ * Context#FEATURE_THREAD_SAFE_OBJECTS} is enabled.
+ */
+public class ShapedSlotMap<T extends PropHolder<T>> implements SlotMap<T> {
+
+    private static final int INITIAL_SLOT_SIZE = 4;
+
+    private Shape shape;
+    private Slot<T>[] slots;
+
+    private static final class Iter<T extends PropHolder<T>> implements Iterator<Slot<T>> {
+        private final Slot<T>[] slots;
+        private final int size;
+        private int pos;
+
+        Iter(Slot<T>[] slots, int size) {
+            this.slots = slots;
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pos < size;
+        }
+
+        @Override
+        public Slot<T> next() {
+            if (pos >= size) {
+                throw new NoSuchElementException();
+            }
+            return slots[pos++];
+        }
+    }
+
+    public ShapedSlotMap() {
+        shape = Shape.EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    public ShapedSlotMap(int capacity) {
+        shape = Shape.EMPTY;
+        slots = new Slot[Math.max(capacity, INITIAL_SLOT_SIZE)];
+    }
+
+    /**
+     * Return the current shape of this map. Two maps with the same shape store the same keys at the
+     * same offsets, so a cached offset may be reused as long as the shape is unchanged.
+     */
+    public Shape getShape() {
+        return shape;
+    }
+
+    /** Return the slot at the specified offset, which must be valid for the current shape. */
+    public Slot<T> getSlot(int offset) {
+        return slots[offset];
+    }
+
+    @Override
+    public int size() {
+        return shape.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return shape.size() == 0;
+    }
+
+    @Override
+    public Iterator<Slot<T>> iterator() {
+        return new Iter<T>(slots, shape.size());
+    }
+
+    @Override
+    public Slot<T> query(Object key, int index) {
+        if (key == null) {
+            // We never hold integer-indexed slots
+            return null;
+        }
+        int offset = shape.getOffset(key);
+        return offset < 0 ? null : slots[offset];
+    }
+
+    @Override
+    public Slot<T> modify(SlotMapOwner<T> owner, Object key, int index, int attributes) {
+        if (key != null) {
+            int offset = shape.getOffset(key);
+            if (offset >= 0) {
+                return slots[offset];
+            }
+        }
+        Slot<T> newSlot = new Slot<T>(key, index, attributes);
+        add(owner, newSlot);
+        return newSlot;
+    }
+
+    @Override
+    public void add(SlotMapOwner<T> owner, Slot<T> newSlot) {
+        Object key = newSlot.name;
+        Shape newShape = null;
+        if (key != null && shape.size() < Shape.MAX_PROPERTIES) {
+            newShape = shape.addProperty(key);
+        }
+        if (newShape == null) {
+            promoteMap(owner, null, newSlot);
+            return;
+        }
+        int offset = shape.size();
+        ensureCapacity(offset + 1);
+        // Shapes keep their own order, so these links are unused until we are promoted
+        newSlot.next = null;
+        newSlot.orderedNext = null;
+        slots[offset] = newSlot;
+        shape = newShape;
+    }
+
+    @Override
+    public <S extends Slot<T>> S compute(
+            SlotMapOwner<T> owner,
+            CompoundOperationMap<T> compoundOp,
+            Object key,
+            int index,
+            SlotComputer<S, T> c) {
+        int offset = key == null ? -1 : shape.getOffset(key);
+        if (offset < 0) {
+            S newSlot = c.compute(key, index, null, compoundOp, owner);
+            if (newSlot != null) {
+                if (!compoundOp.touched) {
+                    add(owner, newSlot);
+                } else {
+                    owner.getMap().add(owner, newSlot);
+                }
+            }
+            return newSlot;
+        }
+
+        Slot<T> slot = slots[offset];
+        S newSlot = c.compute(key, index, slot, compoundOp, owner);
+        if (compoundOp.touched) {
+            return compoundOp.compute(owner, compoundOp, key, index, (k, i, s, m, o) -> newSlot);
+        }
+        if (newSlot == null) {
+            promoteMap(owner, slot, null);
+        } else if (newSlot != slot) {
+            newSlot.next = null;
+            newSlot.orderedNext = null;
+            slots[offset] = newSlot;
+        }
+        return newSlot;
+    }
+
+    /**
+     * Replace this map on the owner with an EmbeddedSlotMap, preserving order, optionally leaving
+     * out one slot that is being removed and adding one that is being created.
+     */
+    private void promoteMap(SlotMapOwner<T> owner, Slot<T> removed, Slot<T> added) {
+        if (owner == null) {
+            throw new IllegalStateException();
+        }
+        int size = shape.size();
+        var newMap = new EmbeddedSlotMap<T>(Math.max(size + 1, INITIAL_SLOT_SIZE));
+        for (int i = 0; i < size; i++) {
+            Slot<T> slot = slots[i];
+            if (slot != removed) {
+                newMap.add(owner, slot);
+            }
+        }
+        if (added != null) {
+            newMap.add(owner, added);
+        }
+        owner.setMap(newMap);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void ensureCapacity(int capacity) {
+        if (slots == null) {
+            slots = new Slot[Math.max(capacity, INITIAL_SLOT_SIZE)];
+        } else if (capacity > slots.length) {
+            Slot<T>[] newSlots = new Slot[Math.min(slots.length * 2, Shape.MAX_PROPERTIES)];
+            System.arraycopy(slots, 0, newSlots, 0, slots.length);
+            slots = newSlots;
+        }
+    }
+}
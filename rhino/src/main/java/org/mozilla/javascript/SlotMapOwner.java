@@ -28,6 +28,8 @@ public abstract class SlotMapOwner<T extends PropHolder<T>> implements PropHolde
 
     static final SlotMap<?> THREAD_SAFE_EMPTY_SLOT_MAP = new ThreadSafeEmptySlotMap<>();
 
+    static final SlotMap<?> SHAPED_EMPTY_SLOT_MAP = new ShapedEmptySlotMap<>();
+
     @SuppressWarnings("AndroidJdkLibsChecker")
     // https://developer.android.com/reference/java/lang/invoke/VarHandle added in API level 33
     // Note: Due presence of this class, dexing of rhino will not be possible for APIs < 26
@@ -163,6 +165,50 @@ public abstract class SlotMapOwner<T extends PropHolder<T>> implements PropHolde
         }
     }
 
+    /**
+     * The empty map used when {@link Context#FEATURE_SHAPED_OBJECTS} is enabled. It is shared by
+     * all empty objects and replaces itself with a {@link ShapedSlotMap} on the first insert.
+     */
+    private static final class ShapedEmptySlotMap<T extends PropHolder<T>>
+            extends EmptySlotMap<T> {
+
+        @Override
+        public Slot<T> modify(SlotMapOwner<T> owner, Object key, int index, int attributes) {
+            var map = new ShapedSlotMap<T>();
+            owner.setMap(map);
+            return map.modify(owner, key, index, attributes);
+        }
+
+        @Override
+        public void add(SlotMapOwner<T> owner, Slot<T> newSlot) {
+            if (newSlot != null) {
+                var map = new ShapedSlotMap<T>();
+                owner.setMap(map);
+                map.add(owner, newSlot);
+            }
+        }
+
+        @Override
+        public <S extends Slot<T>> S compute(
+                SlotMapOwner<T> owner,
+                CompoundOperationMap<T> compoundOp,
+                Object key,
+                int index,
+                SlotComputer<S, T> c) {
+            var newSlot = c.compute(key, index, null, compoundOp, owner);
+            if (newSlot != null) {
+                if (!compoundOp.isTouched()) {
+                    var map = new ShapedSlotMap<T>();
+                    owner.setMap(map);
+                    map.add(owner, newSlot);
+                } else {
+                    compoundOp.add(owner, newSlot);
+                }
+            }
+            return newSlot;
+        }
+    }
+
     private static final class Iter<T extends PropHolder<T>> implements Iterator<Slot<T>> {
         private Slot<T> next;
 
@@ -335,7 +381,16 @@ public abstract class SlotMapOwner<T extends PropHolder<T>> implements PropHolde
             } else {
                 return new ThreadSafeEmbeddedSlotMap<>();
             }
-        } else if (initialSize == 0) {
+        } else if ((cx != null) && cx.hasFeature(Context.FEATURE_SHAPED_OBJECTS)) {
+            if (initialSize == 0) {
+                @SuppressWarnings("unchecked")
+                var res = (SlotMap<T>) SHAPED_EMPTY_SLOT_MAP;
+                return res;
+            } else if (initialSize <= Shape.MAX_PROPERTIES) {
+                return new ShapedSlotMap<>(initialSize);
+            }
+        }
+        if (initialSize == 0) {
             @SuppressWarnings("unchecked")
             var res = (SlotMap<T>) EMPTY_SLOT_MAP;
             return res;
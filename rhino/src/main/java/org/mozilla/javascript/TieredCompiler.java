@@ -0,0 +1,276 @@
+package org.mozilla.javascript;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import org.mozilla.javascript.Context.EvaluationMethod;
+import org.mozilla.javascript.ast.FunctionNode;
+import org.mozilla.javascript.ast.ScriptNode;
+import org.mozilla.javascript.config.RhinoConfig;
+
+/**
+ * Implements tiered execution, as selected by {@link EvaluationMethod#Tiered}. A script is first
+ * compiled by the interpreter, and every function in it counts how many times it has been called
+ * and how many times its loops have jumped backwards. When a function reaches {@link #THRESHOLD},
+ * the whole script is compiled again to JVM bytecode, and the code of the hot function is replaced
+ * with the compiled version of the same function. Functions that never get hot never pay for
+ * bytecode generation, and the bytecode is only generated once per script however many of its
+ * functions get hot.
+ *
+ * <p>If the {@link ContextFactory} has a compilation executor then the script is compiled there,
+ * and hot functions keep running in the interpreter until it is done. Otherwise it is compiled on
+ * the thread that made the function hot. Either way, the switch happens on the next call, so a
+ * call that is already running in the interpreter carries on there.
+ *
+ * <p>Scripts normally only run once, so their code is never replaced. Instead, when a script that
+ * has been compiled jumps back to the start of one of its top level loops, the interpreter calls
+ * the compiled script's loop entry, which carries on from the start of the loop's next iteration
+ * and runs the rest of the script. The interpreter only has to hand over the script's completion
+ * value so far, since the variables of a script live in its scope.
+ *
+ * <p>Generators stay in the interpreter, since a generator that was started by the interpreter can
+ * only be resumed by the interpreter. Since compiled code does not support continuations, tiered
+ * execution should not be used with scripts that capture them.
+ */
+final class TieredCompiler {
+
+    /** The number of calls plus backwards jumps after which a function is compiled. */
+    static final int THRESHOLD = RhinoConfig.get("rhino.tiered.threshold", 1000);
+
+    private final String source;
+    private final String sourceName;
+    private final int lineno;
+    private final Object securityDomain;
+    private final CompilerEnvirons compilerEnv;
+    private final boolean returnFunction;
+    private final VarScope scope;
+
+    private JSDescriptor<?> interpreted;
+    // Maps each interpreted descriptor that may tier up to its compiled twin. Null until the
+    // script has been compiled, and then empty if compilation failed.
+    private Map<JSDescriptor<?>, JSDescriptor<?>> compiled;
+    // Descriptors that got hot while the script was being compiled
+    private List<JSDescriptor<?>> pending = new ArrayList<>();
+    private boolean compiling;
+    // The compiled script, if it can be entered at the start of the same loops as the
+    // interpreted one
+    private volatile JSCode<JSScript> loopCode;
+
+    TieredCompiler(
+            String source,
+            String sourceName,
+            int lineno,
+            Object securityDomain,
+            CompilerEnvirons compilerEnv,
+            boolean returnFunction,
+            VarScope scope) {
+        this.source = source;
+        this.sourceName = sourceName;
+        this.lineno = lineno;
+        this.securityDomain = securityDomain;
+        this.compilerEnv = compilerEnv;
+        this.returnFunction = returnFunction;
+        this.scope = scope;
+    }
+
+    /** Start counting calls for all the interpreted functions under the descriptor. */
+    void attach(JSDescriptor<?> root) {
+        interpreted = root;
+        attach_r(root);
+    }
+
+    private void attach_r(JSDescriptor<?> desc) {
+        if (desc.getCode() instanceof InterpreterData) {
+            ((InterpreterData<?>) desc.getCode()).tiering = this;
+        }
+        for (int i = 0; i < desc.getFunctionCount(); i++) {
+            attach_r(desc.getFunction(i));
+        }
+    }
+
+    /**
+     * Called by the interpreter when the function that is running has been called, or has jumped
+     * backwards, often enough to be compiled.
+     */
+    static void tierUp(Context cx, InterpreterData<?> idata, ScriptOrFn<?> fnOrScript) {
+        if (fnOrScript != null && fnOrScript.getDescriptor().getCode() == idata) {
+            idata.tiering.replaceCode(cx, fnOrScript.getDescriptor());
+        }
+    }
+
+    /**
+     * Return the compiled code for the script, which the interpreter may enter at the start of a
+     * loop, or null if the script has not been compiled yet or cannot be entered that way.
+     */
+    JSCode<JSScript> getLoopCode() {
+        return loopCode;
+    }
+
+    private void replaceCode(Context cx, JSDescriptor<?> desc) {
+        synchronized (this) {
+            if (compiled != null) {
+                install(desc, cx.getFactory().getCompilationStats());
+                return;
+            }
+            pending.add(desc);
+            if (compiling) {
+                return;
+            }
+            compiling = true;
+        }
+
+        ContextFactory factory = cx.getFactory();
+        CompilationStats stats = factory.getCompilationStats();
+        ExecutorService executor = factory.getCompilationExecutor();
+        if (executor != null) {
+            stats.queued();
+            try {
+                executor.execute(
+                        () ->
+                                factory.call(
+                                        bgcx -> {
+                                            stats.dequeued();
+                                            compileAndInstall(bgcx, stats);
+                                            return null;
+                                        }));
+                return;
+            } catch (RejectedExecutionException e) {
+                stats.dequeued();
+            }
+        }
+        compileAndInstall(cx, stats);
+    }
+
+    private void compileAndInstall(Context cx, CompilationStats stats) {
+        long start = System.nanoTime();
+        Map<JSDescriptor<?>, JSDescriptor<?>> result = compile(cx);
+        stats.compiled(System.nanoTime() - start, !result.isEmpty());
+        synchronized (this) {
+            compiled = result;
+            for (JSDescriptor<?> desc : pending) {
+                install(desc, stats);
+            }
+            pending = null;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void install(JSDescriptor desc, CompilationStats stats) {
+        JSDescriptor<?> target = compiled.get(desc);
+        if (target != null) {
+            // Each half is replaced by a single store, and a function may run either version of
+            // its code, so readers need no locking.
+            desc.replaceCode(target);
+            stats.installed();
+        }
+    }
+
+    private Map<JSDescriptor<?>, JSDescriptor<?>> compile(Context cx) {
+        Map<JSDescriptor<?>, JSDescriptor<?>> result = new IdentityHashMap<>();
+        if (interpreted == null) {
+            return result;
+        }
+        Evaluator compiler = EvaluationMethod.Compiler.createEvaluator();
+        try {
+            compilerEnv.setEvaluationMethod(EvaluationMethod.Compiler);
+            ErrorReporter reporter = new SilentErrorReporter();
+            ScriptNode tree =
+                    cx.parse(source, sourceName, lineno, compilerEnv, reporter, returnFunction);
+            JSDescriptor<?> root;
+            if (returnFunction) {
+                var res = compiler.compileFunction(compilerEnv, tree, source);
+                var fn = compiler.createFunctionObject(cx, scope, res, securityDomain);
+                root = ((JSFunction) fn).getDescriptor();
+            } else {
+                var res = compiler.compileScript(compilerEnv, tree, source);
+                var script = compiler.createScriptObject(res, securityDomain);
+                var desc = ((JSScript) script).getDescriptor();
+                findLoopCode(desc, tree);
+                root = desc;
+            }
+            if (returnFunction) {
+                // The tree is a script that holds the function, but the descriptor is the
+                // function itself.
+                match(interpreted, root, tree.getFunctionNode(0), result);
+            } else {
+                match(interpreted, root, tree, result);
+            }
+        } catch (RuntimeException e) {
+            // Most likely the script is too big for a class file, so leave it interpreted.
+            result.clear();
+        }
+        return result;
+    }
+
+    private void findLoopCode(JSDescriptor<JSScript> comp, ScriptNode tree) {
+        if (compilerEnv.isGenerateLoopEntries()
+                && interpreted.getCode() instanceof InterpreterData
+                && interpreted.isStrict() == comp.isStrict()) {
+            int[] entries = ((InterpreterData<?>) interpreted.getCode()).loopEntries;
+            // The tree has been transformed by the compiler, just as the interpreter's copy was
+            if (entries != null && entries.length == CodeGenUtils.findLoopEntries(tree).size()) {
+                loopCode = comp.getCode();
+            }
+        }
+    }
+
+    /**
+     * Walk the interpreted and compiled descriptors, and the tree that they both came from, in
+     * parallel, and record which compiled descriptor goes with each interpreted one.
+     */
+    private static void match(
+            JSDescriptor<?> interp,
+            JSDescriptor<?> comp,
+            ScriptNode node,
+            Map<JSDescriptor<?>, JSDescriptor<?>> result) {
+        if (interp.getFunctionCount() != comp.getFunctionCount()
+                || interp.getFunctionCount() != node.getFunctionCount()) {
+            return;
+        }
+        if (interp.isFunction() && canTierUp(interp, comp, (FunctionNode) node)) {
+            result.put(interp, comp);
+        }
+        List<JSDescriptor<JSFunction>> interpFns = interp.getNestedFunctions();
+        List<JSDescriptor<JSFunction>> compFns = comp.getNestedFunctions();
+        for (int i = 0; i < node.getFunctionCount(); i++) {
+            match(interpFns.get(i), compFns.get(i), node.getFunctionNode(i), result);
+        }
+    }
+
+    private static boolean canTierUp(
+            JSDescriptor<?> interp, JSDescriptor<?> comp, FunctionNode fn) {
+        return !fn.isGenerator()
+                && !fn.isES6Generator()
+                && interp.getParamCount() == comp.getParamCount()
+                && interp.getParamAndVarCount() == comp.getParamAndVarCount()
+                && interp.isStrict() == comp.isStrict()
+                && interp.requiresActivationFrame() == comp.requiresActivationFrame();
+    }
+
+    /**
+     * Any warnings were already reported when the script was first compiled, so don't report them
+     * again. Errors can't happen either since the source has already been compiled once, except for
+     * the few that {@link LazyFunctionCode} only finds when a function is first called, which are
+     * thrown.
+     */
+    static final class SilentErrorReporter implements ErrorReporter {
+        @Override
+        public void warning(
+                String message, String sourceName, int line, String lineSource, int lineOffset) {}
+
+        @Override
+        public void error(
+                String message, String sourceName, int line, String lineSource, int lineOffset) {
+            throw runtimeError(message, sourceName, line, lineSource, lineOffset);
+        }
+
+        @Override
+        public EvaluatorException runtimeError(
+                String message, String sourceName, int line, String lineSource, int lineOffset) {
+            return new EvaluatorException(message, sourceName, line, lineSource, lineOffset);
+        }
+    }
+}
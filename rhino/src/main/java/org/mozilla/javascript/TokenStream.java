@@ -43,7 +43,7 @@ class TokenStream implements Parser.CurrentPositionReporter {
         if (sourceReader != null) {
             if (sourceString != null) Kit.codeBug();
             this.sourceReader = sourceReader;
-            this.sourceBuffer = new char[512];
+            this.sourceBuffer = new char[8192];
             this.sourceEnd = 0;
         } else {
             if (sourceString == null) Kit.codeBug();
@@ -1138,7 +1138,7 @@ class TokenStream implements Parser.CurrentPositionReporter {
 
                 String str = getStringFromBuffer();
                 this.string = internString(str);
-                cursor = sourceCursor;
+                cursor = sourceBase + sourceCursor;
                 tokenEnd = cursor;
                 return Token.STRING;
             }
@@ -1343,7 +1343,7 @@ class TokenStream implements Parser.CurrentPositionReporter {
                                 lookForSlash = true;
                             } else if (c == '/') {
                                 if (lookForSlash) {
-                                    cursor = sourceCursor;
+                                    cursor = sourceBase + sourceCursor;
                                     tokenEnd = cursor;
                                     return Token.COMMENT;
                                 }
@@ -1607,7 +1607,7 @@ class TokenStream implements Parser.CurrentPositionReporter {
             switch (lineEndChar) {
                 case '\r':
                     // check whether dealing with a <CR><LF> sequence
-                    if (charAt(cursor) == '\n') {
+                    if (charAt(sourceCursor) == '\n') {
                         // consume the <LF> that followed the <CR>
                         getCharIgnoreLineEnd(false);
                     }
@@ -1668,7 +1668,7 @@ class TokenStream implements Parser.CurrentPositionReporter {
                 case '`':
                     rawString.setLength(rawString.length() - 1); // don't include "`"
                     this.string = hasInvalidEscapeSequences ? null : getStringFromBuffer();
-                    cursor = sourceCursor;
+                    cursor = sourceBase + sourceCursor;
                     tokenEnd = cursor;
                     return Token.TEMPLATE_LITERAL;
                 case '$':
@@ -1924,7 +1924,7 @@ class TokenStream implements Parser.CurrentPositionReporter {
 
                 if (!xmlIsTagContent && xmlOpenTagsCount == 0) {
                     this.string = getStringFromBuffer();
-                    cursor = sourceCursor;
+                    cursor = sourceBase + sourceCursor;
                     tokenEnd = cursor;
                     return Token.XMLEND;
                 }
@@ -2208,6 +2208,16 @@ class TokenStream implements Parser.CurrentPositionReporter {
                 }
                 cursor++;
                 c = sourceBuffer[sourceCursor++];
+                if (Character.isHighSurrogate((char) c)) {
+                    // Read a pair as one code point, as is done for a string
+                    if (sourceCursor == sourceEnd) {
+                        fillSourceBuffer();
+                    }
+                    if (sourceCursor != sourceEnd
+                            && Character.isLowSurrogate(sourceBuffer[sourceCursor])) {
+                        c = Character.toCodePoint((char) c, sourceBuffer[sourceCursor++]);
+                    }
+                }
             }
 
             if (!ignoreLineEnd && lineEndChar >= 0) {
@@ -2385,6 +2395,7 @@ class TokenStream implements Parser.CurrentPositionReporter {
         if (sourceEnd == sourceBuffer.length) {
             if (lineStart != 0 && !isMarkingComment()) {
                 System.arraycopy(sourceBuffer, lineStart, sourceBuffer, 0, sourceEnd - lineStart);
+                sourceBase += lineStart;
                 sourceEnd -= lineStart;
                 sourceCursor -= lineStart;
                 lineStart = 0;
@@ -2527,6 +2538,10 @@ class TokenStream implements Parser.CurrentPositionReporter {
     // sliding window of the source stream.
     int sourceCursor;
 
+    // sourceBase is the index in the source stream of the first
+    // character in the buffer; it is always 0 for a source string.
+    private int sourceBase;
+
     // cursor is a monotonically increasing index into the original
     // source stream, tracking exactly how far scanning has progressed.
     // Its value is the index of the next character to be scanned.
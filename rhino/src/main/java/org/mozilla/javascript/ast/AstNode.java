@@ -613,6 +613,18 @@ public abstract class AstNode extends Node implements Comparable<AstNode> {
         return dpv.toString();
     }
 
+    /**
+     * Drops the links from this node to the rest of the parse tree, once the node has been
+     * transformed into IR, so that the parts of the parse tree that the IR does not use can be
+     * garbage collected. The line number inherited from the parent is kept, but positions are no
+     * longer meaningful afterwards.
+     */
+    public void detachFromParseTree() {
+        lineno = getLineno();
+        parent = null;
+        inlineComment = null;
+    }
+
     public AstNode getInlineComment() {
         return inlineComment;
     }
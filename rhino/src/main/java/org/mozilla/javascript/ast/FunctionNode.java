@@ -118,6 +118,8 @@ public class FunctionNode extends ScriptNode {
     private boolean requiresArgumentObject;
     private boolean isGenerator;
     private boolean isES6Generator;
+    private boolean isLazy;
+    private boolean isDeclaredInBlock;
     private List<Node> generatorResumePoints;
     private Map<Node, int[]> liveLocals;
     private Node generatorParamInitBlock; // IR block for default parameters init in generators
@@ -345,6 +347,18 @@ public class FunctionNode extends ScriptNode {
         isShorthand = true;
     }
 
+    /**
+     * Returns true if the body of this function was left out of the IR, to be compiled from the
+     * source when the function is first called.
+     */
+    public boolean isLazy() {
+        return isLazy;
+    }
+
+    public void setIsLazy() {
+        isLazy = true;
+    }
+
     public void addResumptionPoint(Node target) {
         if (generatorResumePoints == null) generatorResumePoints = new ArrayList<>();
         generatorResumePoints.add(target);
@@ -491,6 +505,30 @@ public class FunctionNode extends ScriptNode {
         return sb.toString();
     }
 
+    /**
+     * Returns whether the function is declared directly in a script, function body or block, rather
+     * than in an expression or as the body of another statement. This is worked out from the parent
+     * node, and remembered when the node is detached from the parse tree.
+     */
+    public boolean isDeclaredInBlock() {
+        AstNode p = getParent();
+        if (p == null) {
+            return isDeclaredInBlock;
+        }
+        return p instanceof AstRoot || p instanceof Scope || p instanceof Block;
+    }
+
+    /** Also drops the body, whose IR is held as the children of this node. */
+    @Override
+    public void detachFromParseTree() {
+        isDeclaredInBlock = isDeclaredInBlock();
+        super.detachFromParseTree();
+        body = null;
+        if (functionName != null) {
+            functionName.detachFromParseTree();
+        }
+    }
+
     /**
      * Visits this node, the function name node if supplied, the parameters, and the body. If there
      * is a member-expr node, it is visited last.
@@ -212,6 +212,18 @@ public class Scope extends Jump {
         return stmts;
     }
 
+    /** Also drops the child scopes, and the declarations that the symbols point to. */
+    @Override
+    public void detachFromParseTree() {
+        super.detachFromParseTree();
+        childScopes = null;
+        if (symbolTable != null) {
+            for (Symbol symbol : symbolTable.values()) {
+                symbol.setNode(null);
+            }
+        }
+    }
+
     @Override
     public String toSource(int depth) {
         StringBuilder sb = new StringBuilder();
@@ -174,6 +174,22 @@ public class ScriptNode extends Scope {
         return functions.size() - 1;
     }
 
+    /** Also detaches the regular expression and template literals used by the script. */
+    @Override
+    public void detachFromParseTree() {
+        super.detachFromParseTree();
+        if (regexps != null) {
+            for (RegExpLiteral re : regexps) {
+                re.detachFromParseTree();
+            }
+        }
+        if (templateLiterals != null) {
+            for (TemplateLiteral tl : templateLiterals) {
+                tl.detachFromParseTree();
+            }
+        }
+    }
+
     public int getRegexpCount() {
         return regexps == null ? 0 : regexps.size();
     }
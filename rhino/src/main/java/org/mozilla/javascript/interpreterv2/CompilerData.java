@@ -27,8 +27,21 @@ public class CompilerData<T extends ScriptOrFn<T>> extends ACompilerData<T, Comp
     //            exception local and scope local
     public static final int EXCEPTION_SLOT_SIZE = 6;
 
+    /**
+     * The number of times that an instruction may be quickened and then have its guard fail
+     * before we stop quickening it.
+     */
+    static final int MAX_DEOPTIMIZATIONS = 2;
+
+    /**
+     * The instructions to execute. Quickening replaces individual entries at runtime, so the
+     * array is shared by every frame that runs this code, but is not constant.
+     */
     public final Instruction[] instructions;
 
+    // How many times the instruction at each pc was de-specialized, allocated on first use
+    private byte[] deoptimizations;
+
     /**
      * @see LineNumberTable
      */
@@ -47,6 +60,47 @@ public class CompilerData<T extends ScriptOrFn<T>> extends ACompilerData<T, Comp
         return instructions;
     }
 
+    /**
+     * Replace the instruction at the given pc with a version specialized for the operand types that
+     * it has seen. Nothing happens if the instruction has been de-specialized too many times
+     * already, or if the current instruction is no longer the expected one, for instance because
+     * another thread quickened it first.
+     *
+     * @return true if the instruction was replaced
+     */
+    public boolean quicken(int pc, Instruction current, Instruction quickened) {
+        if (!canQuicken(pc) || instructions[pc] != current) {
+            return false;
+        }
+        instructions[pc] = quickened;
+        return true;
+    }
+
+    /** Return whether the instruction at the given pc may still be quickened. */
+    public boolean canQuicken(int pc) {
+        byte[] d = deoptimizations;
+        return d == null || d[pc] < MAX_DEOPTIMIZATIONS;
+    }
+
+    /**
+     * Put the generic version of an instruction back after a quickened instruction found that its
+     * assumptions no longer hold.
+     */
+    public void deoptimize(int pc, Instruction quickened, Instruction generic) {
+        if (instructions[pc] != quickened) {
+            return;
+        }
+        byte[] d = deoptimizations;
+        if (d == null) {
+            d = new byte[instructions.length];
+            deoptimizations = d;
+        }
+        if (d[pc] < MAX_DEOPTIMIZATIONS) {
+            d[pc]++;
+        }
+        instructions[pc] = generic;
+    }
+
     public int[] getLineNumbers() {
         return LineNumberTable.getLineNumbers(lineNumberTable);
     }
@@ -0,0 +1,100 @@
+package org.mozilla.javascript.interpreterv2.instruction;
+
+import org.mozilla.javascript.CallFrameV2;
+import org.mozilla.javascript.ConsString;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.interpreterv2.InstructionFormatter;
+import org.mozilla.javascript.interpreterv2.operand.Operand;
+
+/**
+ * The "+" operator. The first time it runs, this instruction quickens itself into a version that
+ * handles only integers or only strings if that is what its operands turned out to be.
+ *
+ * <p>The right operand is always retrieved first, because when both operands are on the stack,
+ * the right one is on top.
+ */
+public final class Add extends Instruction {
+    private final Operand left;
+    private final Operand right;
+
+    public Add(Operand left, Operand right) {
+        this.left = left;
+        this.right = right;
+    }
+
+    @Override
+    public void interpret(Context cx, CallFrameV2 frame) {
+        Object rhs = right.retrieveAndWrap(cx, frame);
+        Object lhs = left.retrieveAndWrap(cx, frame);
+        if (frame.compilerData.canQuicken(frame.pc)) {
+            if (lhs instanceof Integer && rhs instanceof Integer) {
+                frame.compilerData.quicken(frame.pc, this, new IntAdd(this));
+            } else if (lhs instanceof CharSequence && rhs instanceof CharSequence) {
+                frame.compilerData.quicken(frame.pc, this, new StringConcat(this));
+            }
+        }
+        frame.push(ScriptRuntime.add(lhs, rhs, cx));
+        frame.pc++;
+    }
+
+    @Override
+    public int stackChange() {
+        return 1 + left.stackChange() + right.stackChange();
+    }
+
+    @Override
+    public String toDebugString() {
+        return InstructionFormatter.formatInstruction(this, "left", left, "right", right);
+    }
+
+    /** Add two integers, which is the most common case for loop counters and the like. */
+    static final class IntAdd extends QuickenedInstruction {
+        private final Operand left;
+        private final Operand right;
+
+        IntAdd(Add generic) {
+            super(generic);
+            this.left = generic.left;
+            this.right = generic.right;
+        }
+
+        @Override
+        public void interpret(Context cx, CallFrameV2 frame) {
+            Object rhs = right.retrieveAndWrap(cx, frame);
+            Object lhs = left.retrieveAndWrap(cx, frame);
+            if (lhs instanceof Integer && rhs instanceof Integer) {
+                frame.push(ScriptRuntime.add((Integer) lhs, (Integer) rhs));
+            } else {
+                deoptimize(frame);
+                frame.push(ScriptRuntime.add(lhs, rhs, cx));
+            }
+            frame.pc++;
+        }
+    }
+
+    /** Concatenate two strings without checking for any of the other cases. */
+    static final class StringConcat extends QuickenedInstruction {
+        private final Operand left;
+        private final Operand right;
+
+        StringConcat(Add generic) {
+            super(generic);
+            this.left = generic.left;
+            this.right = generic.right;
+        }
+
+        @Override
+        public void interpret(Context cx, CallFrameV2 frame) {
+            Object rhs = right.retrieveAndWrap(cx, frame);
+            Object lhs = left.retrieveAndWrap(cx, frame);
+            if (lhs instanceof CharSequence && rhs instanceof CharSequence) {
+                frame.push(new ConsString((CharSequence) lhs, (CharSequence) rhs));
+            } else {
+                deoptimize(frame);
+                frame.push(ScriptRuntime.add(lhs, rhs, cx));
+            }
+            frame.pc++;
+        }
+    }
+}
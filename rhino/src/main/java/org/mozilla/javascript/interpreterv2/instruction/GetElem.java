@@ -0,0 +1,98 @@
+package org.mozilla.javascript.interpreterv2.instruction;
+
+import org.mozilla.javascript.CallFrameV2;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.interpreterv2.InstructionFormatter;
+import org.mozilla.javascript.interpreterv2.operand.Operand;
+
+/**
+ * Get an element of an object, as in "obj[index]". The first time it runs, if the object is an
+ * array and the index is an integer, this instruction quickens itself into a version that reads
+ * directly from the dense storage of the array.
+ *
+ * <p>The index is always retrieved first, because when both operands are on the stack, the index
+ * is on top.
+ */
+public final class GetElem extends Instruction {
+    private final Operand object;
+    private final Operand index;
+
+    public GetElem(Operand object, Operand index) {
+        this.object = object;
+        this.index = index;
+    }
+
+    @Override
+    public void interpret(Context cx, CallFrameV2 frame) {
+        Object id = index.retrieveAndWrap(cx, frame);
+        Object obj = object.retrieveAndWrap(cx, frame);
+        if (obj != null
+                && obj.getClass() == NativeArray.class
+                && toDenseIndex(id) >= 0
+                && frame.compilerData.canQuicken(frame.pc)) {
+            frame.compilerData.quicken(frame.pc, this, new DenseArrayElem(this));
+        }
+        frame.push(ScriptRuntime.getObjectElem(obj, id, cx, frame.scope));
+        frame.pc++;
+    }
+
+    @Override
+    public int stackChange() {
+        return 1 + object.stackChange() + index.stackChange();
+    }
+
+    @Override
+    public String toDebugString() {
+        return InstructionFormatter.formatInstruction(this, "object", object, "index", index);
+    }
+
+    /** Return the index as an int if it is a non-negative integer, or -1 otherwise. */
+    private static int toDenseIndex(Object id) {
+        if (id instanceof Integer) {
+            int i = (Integer) id;
+            return i >= 0 ? i : -1;
+        }
+        if (id instanceof Double) {
+            double d = (Double) id;
+            int i = (int) d;
+            return (i == d && i >= 0) ? i : -1;
+        }
+        return -1;
+    }
+
+    /** Read an element from the dense part of an array. */
+    static final class DenseArrayElem extends QuickenedInstruction {
+        private final Operand object;
+        private final Operand index;
+
+        DenseArrayElem(GetElem generic) {
+            super(generic);
+            this.object = generic.object;
+            this.index = generic.index;
+        }
+
+        @Override
+        public void interpret(Context cx, CallFrameV2 frame) {
+            Object id = index.retrieveAndWrap(cx, frame);
+            Object obj = object.retrieveAndWrap(cx, frame);
+            int i = toDenseIndex(id);
+            if (obj != null && obj.getClass() == NativeArray.class && i >= 0) {
+                Object value = ((NativeArray) obj).getDenseElement(i);
+                if (value != Scriptable.NOT_FOUND) {
+                    frame.push(value);
+                    frame.pc++;
+                    return;
+                }
+                // A hole, or an array that is no longer dense, is still an array, so
+                // stay quickened and just look it up the long way this time.
+            } else {
+                deoptimize(frame);
+            }
+            frame.push(ScriptRuntime.getObjectElem(obj, id, cx, frame.scope));
+            frame.pc++;
+        }
+    }
+}
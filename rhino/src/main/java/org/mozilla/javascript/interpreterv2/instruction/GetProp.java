@@ -0,0 +1,89 @@
+package org.mozilla.javascript.interpreterv2.instruction;
+
+import org.mozilla.javascript.CallFrameV2;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Shape;
+import org.mozilla.javascript.ShapedAccess;
+import org.mozilla.javascript.interpreterv2.InstructionFormatter;
+import org.mozilla.javascript.interpreterv2.operand.Operand;
+
+/**
+ * Get a named property of an object, as in "obj.name". The first time it runs, if the object has a
+ * {@link Shape} that contains the property, this instruction quickens itself into a version that
+ * reads the property straight from its offset for objects of that shape.
+ */
+public final class GetProp extends Instruction {
+    private final Operand object;
+    private final String name;
+
+    public GetProp(Operand object, String name) {
+        this.object = object;
+        this.name = name;
+    }
+
+    @Override
+    public void interpret(Context cx, CallFrameV2 frame) {
+        Object obj = object.retrieveAndWrap(cx, frame);
+        Shape shape = ShapedAccess.getShape(obj);
+        if (shape != null && frame.compilerData.canQuicken(frame.pc)) {
+            int offset = shape.getOffset(name);
+            if (offset >= 0) {
+                frame.compilerData.quicken(
+                        frame.pc, this, new OwnDataProperty(this, obj.getClass(), shape, offset));
+            }
+        }
+        frame.push(ScriptRuntime.getObjectProp(obj, name, cx, frame.scope));
+        frame.pc++;
+    }
+
+    @Override
+    public int stackChange() {
+        return 1 + object.stackChange();
+    }
+
+    @Override
+    public String toDebugString() {
+        return InstructionFormatter.formatInstruction(this, "object", object, "name", name);
+    }
+
+    /** Read a property that objects of one class and shape store at a known offset. */
+    static final class OwnDataProperty extends QuickenedInstruction {
+        private final Operand object;
+        private final String name;
+        private final Class<?> cls;
+        private final Shape shape;
+        private final int offset;
+
+        OwnDataProperty(GetProp generic, Class<?> cls, Shape shape, int offset) {
+            super(generic);
+            this.object = generic.object;
+            this.name = generic.name;
+            this.cls = cls;
+            this.shape = shape;
+            this.offset = offset;
+        }
+
+        @Override
+        public void interpret(Context cx, CallFrameV2 frame) {
+            Object obj = object.retrieveAndWrap(cx, frame);
+            if (obj != null
+                    && obj.getClass() == cls
+                    && ShapedAccess.getShapeUnchecked((ScriptableObject) obj) == shape) {
+                ScriptableObject sobj = (ScriptableObject) obj;
+                Object value = ShapedAccess.getValue(sobj, offset, sobj);
+                if (value != Scriptable.NOT_FOUND) {
+                    frame.push(value);
+                    frame.pc++;
+                    return;
+                }
+            } else {
+                deoptimize(frame);
+            }
+            frame.push(ScriptRuntime.getObjectProp(obj, name, cx, frame.scope));
+            frame.pc++;
+        }
+    }
+}
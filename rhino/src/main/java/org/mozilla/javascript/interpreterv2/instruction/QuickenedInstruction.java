@@ -0,0 +1,32 @@
+package org.mozilla.javascript.interpreterv2.instruction;
+
+import org.mozilla.javascript.CallFrameV2;
+
+/**
+ * Base class for instructions that were specialized at runtime, or "quickened," by a generic
+ * instruction based on the operands that it saw when it ran. A quickened instruction checks that
+ * its assumptions still hold every time it runs. When they don't, it finishes the operation the
+ * generic way and then calls {@link #deoptimize} to put the generic instruction back.
+ */
+public abstract class QuickenedInstruction extends Instruction {
+    protected final Instruction generic;
+
+    protected QuickenedInstruction(Instruction generic) {
+        this.generic = generic;
+    }
+
+    /** Replace this instruction with the generic version that it was quickened from. */
+    protected final void deoptimize(CallFrameV2 frame) {
+        frame.compilerData.deoptimize(frame.pc, this, generic);
+    }
+
+    @Override
+    public int stackChange() {
+        return generic.stackChange();
+    }
+
+    @Override
+    public String toDebugString() {
+        return generic.toDebugString() + " [" + getClass().getSimpleName() + "]";
+    }
+}
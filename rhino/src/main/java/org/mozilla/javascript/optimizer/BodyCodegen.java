@@ -11,6 +11,7 @@ import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import org.mozilla.classfile.ByteCode;
 import org.mozilla.classfile.ClassFileWriter;
 import org.mozilla.javascript.CompilerEnvirons;
@@ -32,6 +33,7 @@ class BodyCodegen {
 
         // generate the body of the current function or script object
         initBodyGeneration();
+        loopEntries = fnCurrent == null ? codegen.loopEntries : null;
 
         if (isGenerator) {
             // All functions in the generated bytecode have a unique name. Every
@@ -40,6 +42,13 @@ class BodyCodegen {
                     codegen.getBodyMethodName(scriptOrFn) + "_gen",
                     Codegen.GENERATOR_METHOD_SIGNATURE,
                     (short) (ACC_STATIC | ACC_PUBLIC));
+        } else if (loopEntries != null) {
+            // Scripts with loop entries have their body in a method that can also start at the
+            // beginning of a loop, and the method that runs the script calls it.
+            cfw.startMethod(
+                    codegen.getBodyMethodName(scriptOrFn) + "_osr",
+                    Codegen.LOOP_ENTRY_METHOD_SIGNATURE,
+                    (short) (ACC_STATIC | ACC_PUBLIC));
         } else {
             cfw.startMethod(
                     codegen.getBodyMethodName(scriptOrFn),
@@ -54,7 +63,18 @@ class BodyCodegen {
         } else {
             treeTop = scriptOrFn;
         }
+        if (splitBudget != 0) {
+            planSplitParts(treeTop);
+        }
+        if (int32Registers != null) {
+            generateInt32Body(treeTop);
+        }
         generateStatement(treeTop);
+        if (splitParts != null && fnCurrent != null && cfw.getStackTop() == 0) {
+            // The return at the end of the function is in a part, but the verifier doesn't know
+            // that the call of the part never completes normally
+            Codegen.pushUndefined(cfw);
+        }
         generateEpilogue();
 
         cfw.stopMethod((short) (localsMax + 1));
@@ -63,6 +83,13 @@ class BodyCodegen {
             // generate the user visible method which when invoked will
             // return a generator object
             generateGenerator();
+        } else if (loopEntries != null) {
+            generateLoopEntryCaller();
+        }
+        if (splitParts != null) {
+            for (SplitPart part : splitPartList) {
+                generateSplitPart(part);
+            }
         }
 
         if (literals != null) {
@@ -162,6 +189,488 @@ class BodyCodegen {
         cfw.stopMethod((short) (localsMax + 1));
     }
 
+    // This creates the method that runs a script with loop entries from the beginning.
+    private void generateLoopEntryCaller() {
+        cfw.startMethod(
+                codegen.getBodyMethodName(scriptOrFn),
+                codegen.getBodyMethodSignature(scriptOrFn),
+                (short) (ACC_STATIC | ACC_PUBLIC));
+
+        initBodyGeneration();
+        cfw.addALoad(contextLocal);
+        cfw.addALoad(funObjLocal);
+        cfw.addALoad(thisObjLocal);
+        cfw.addALoad(variableObjectLocal);
+        cfw.addPush(-1);
+        Codegen.pushUndefined(cfw);
+        cfw.addInvoke(
+                ByteCode.INVOKESTATIC,
+                codegen.mainClassName,
+                codegen.getBodyMethodName(scriptOrFn) + "_osr",
+                Codegen.LOOP_ENTRY_METHOD_SIGNATURE);
+        cfw.add(ByteCode.ARETURN);
+        cfw.stopMethod((short) 6);
+    }
+
+    /**
+     * Generate the start of a script's loop entry method. Local 2 holds the script's this, local 4
+     * the index of the loop to start at, or -1 to start at the beginning, and local 5 the
+     * completion value of the script so far. Jumping to a loop skips the initialization of the
+     * script, which has already been done by whoever started running it.
+     */
+    private void generateLoopEntrySwitch() {
+        cfw.addILoad(thisObjLocal);
+        cfw.addALoad(newTargetLocal);
+        cfw.addAStore(thisObjLocal);
+
+        popvLocal = getNewWordLocal();
+        cfw.addALoad(argsLocal);
+        cfw.addAStore(popvLocal);
+        // The rest of the body expects args[] in local 5, and scripts have no arguments
+        cfw.add(
+                ByteCode.GETSTATIC,
+                "org/mozilla/javascript/ScriptRuntime",
+                "emptyArgs",
+                "[Ljava/lang/Object;");
+        cfw.addAStore(argsLocal);
+
+        int entrySwitch = cfw.addTableSwitch(0, loopEntries.size() - 1);
+        for (int i = 0; i < loopEntries.size(); i++) {
+            cfw.markTableSwitchCase(entrySwitch, i);
+            cfw.add(ByteCode.GOTO, getTargetLabel(loopEntries.get(i)));
+        }
+        cfw.markTableSwitchDefault(entrySwitch);
+    }
+
+    /**
+     * Generate a copy of the body that keeps the int32 variables of the function in int registers.
+     * When a guarded int32 operation fails, the copy moves the int32 variables to their double
+     * registers and jumps to the start of the same statement in the generic copy of the body,
+     * which is generated next and runs the rest of the call.
+     */
+    private void generateInt32Body(Node treeTop) {
+        deoptTargets = new HashMap<>();
+        deoptStubs = new ArrayList<>();
+        speculating = true;
+        generateStatement(treeTop);
+        speculating = false;
+
+        // The body ends with a return, so nothing falls through into the stubs
+        for (int[] stub : deoptStubs) {
+            cfw.markLabel(stub[0], 0);
+            for (int i = 0; i != int32Registers.length; ++i) {
+                if (fnCurrent.isInt32Var(i)) {
+                    cfw.addILoad(int32Registers[i]);
+                    cfw.add(ByteCode.I2D);
+                    cfw.addDStore(varRegisters[i]);
+                }
+            }
+            cfw.add(ByteCode.GOTO, stub[1]);
+        }
+        resetTargets_r(treeTop);
+    }
+
+    static void resetTargets_r(Node node) {
+        if (node.getType() == Token.TARGET) {
+            node.labelId(-1);
+        }
+        for (Node child = node.getFirstChild(); child != null; child = child.getNext()) {
+            resetTargets_r(child);
+        }
+    }
+
+    /**
+     * Choose the runs of statements that are moved into methods of their own, so that no method
+     * gets bigger than the JVM allows. A run is made of whole statements of one block, and no jump
+     * may go into or out of it. A statement that is too big to move as a whole is split in turn if
+     * it is a block. Each run gets about {@link #splitBudget} nodes of the tree.
+     */
+    private void planSplitParts(Node treeTop) {
+        splitParts = new IdentityHashMap<>();
+        splitPartList = new ArrayList<>();
+        IdentityHashMap<Node, int[]> refCounts = new IdentityHashMap<>();
+        ArrayList<Node> refs = new ArrayList<>();
+        forEachNode(treeTop, n -> addReferencedNodes(n, refs));
+        for (Node ref : refs) {
+            refCounts.computeIfAbsent(ref, k -> new int[1])[0]++;
+        }
+        planSplitParts_r(treeTop, refCounts);
+        if (splitPartList.isEmpty()) {
+            splitParts = null;
+            splitPartList = null;
+            return;
+        }
+
+        // Variables that are kept in registers are passed to the parts in a frame array, and so
+        // is the result of a script
+        frameLocal = -1;
+        int frameSize = fnCurrent == null ? 1 : (varRegisters == null ? 0 : 2 * varRegisters.length);
+        if (frameSize != 0) {
+            frameLocal = getNewWordLocal();
+            cfw.addPush(frameSize);
+            cfw.add(ByteCode.ANEWARRAY, "java/lang/Object");
+            cfw.addAStore(frameLocal);
+        }
+    }
+
+    private void planSplitParts_r(Node container, IdentityHashMap<Node, int[]> refCounts) {
+        ArrayList<Node> children = new ArrayList<>();
+        for (Node child = container.getFirstChild(); child != null; child = child.getNext()) {
+            children.add(child);
+        }
+        int count = children.size();
+        int[] sizes = new int[count];
+        boolean[] pinned = new boolean[count];
+        // The nodes that jumps can refer to, with the index of the statement that holds them
+        IdentityHashMap<Node, Integer> owners = new IdentityHashMap<>();
+        for (int i = 0; i != count; ++i) {
+            Integer index = i;
+            int[] size = new int[1];
+            forEachNode(
+                    children.get(i),
+                    n -> {
+                        size[0]++;
+                        if (n.getType() == Token.TARGET || n.getType() == Token.LOCAL_BLOCK) {
+                            owners.put(n, index);
+                        }
+                    });
+            sizes[i] = size[0];
+            int type = children.get(i).getType();
+            // The scope of a with statement is in a register of the method that enters it
+            pinned[i] = type == Token.ENTERWITH || type == Token.LEAVEWITH;
+        }
+
+        // A jump between two statements keeps the statements between them together, and a jump
+        // out of the block keeps its statement in the method of the block
+        int[] joined = new int[count + 1];
+        IdentityHashMap<Node, int[]> localRefCounts = new IdentityHashMap<>();
+        ArrayList<Node> refs = new ArrayList<>();
+        for (int i = 0; i != count; ++i) {
+            refs.clear();
+            forEachNode(children.get(i), n -> addReferencedNodes(n, refs));
+            for (Node ref : refs) {
+                Integer owner = owners.get(ref);
+                if (owner == null) {
+                    pinned[i] = true;
+                } else {
+                    localRefCounts.computeIfAbsent(ref, k -> new int[1])[0]++;
+                    if (owner != i) {
+                        joined[Math.min(owner, i) + 1]++;
+                        joined[Math.max(owner, i) + 1]--;
+                    }
+                }
+            }
+        }
+        // A jump from outside the block to a statement in it keeps that statement here too
+        for (Map.Entry<Node, Integer> e : owners.entrySet()) {
+            int[] total = refCounts.get(e.getKey());
+            int[] local = localRefCounts.get(e.getKey());
+            if (total != null && (local == null || local[0] != total[0])) {
+                pinned[e.getValue()] = true;
+            }
+        }
+
+        // Statements that must stay together form a group, and runs are made of whole groups
+        int runStart = -1;
+        int runSize = 0;
+        int open = 0;
+        int groupStart = 0;
+        for (int i = 0; i != count; ++i) {
+            open += joined[i + 1];
+            if (open > 0 && i + 1 != count) {
+                continue;
+            }
+            int groupSize = 0;
+            boolean movable = true;
+            for (int j = groupStart; j <= i; ++j) {
+                groupSize += sizes[j];
+                movable &= !pinned[j];
+            }
+            boolean splitInside = groupSize > splitBudget && (!movable || groupStart == i);
+            if (movable && !(splitInside && isSplittableBlock(children.get(i)))) {
+                if (runStart != -1 && runSize + groupSize > splitBudget) {
+                    addSplitPart(children, runStart, groupStart - 1);
+                    runStart = -1;
+                }
+                if (runStart == -1) {
+                    runStart = groupStart;
+                    runSize = 0;
+                }
+                runSize += groupSize;
+            } else {
+                if (runStart != -1) {
+                    addSplitPart(children, runStart, groupStart - 1);
+                    runStart = -1;
+                }
+                for (int j = groupStart; j <= i; ++j) {
+                    if (sizes[j] > splitBudget && isSplittableBlock(children.get(j))) {
+                        planSplitParts_r(children.get(j), refCounts);
+                    }
+                }
+            }
+            groupStart = i + 1;
+        }
+        if (runStart != -1) {
+            addSplitPart(children, runStart, count - 1);
+        }
+    }
+
+    /** Return true for the statements whose children are generated one after another. */
+    private static boolean isSplittableBlock(Node node) {
+        switch (node.getType()) {
+            case Token.SCRIPT:
+            case Token.BLOCK:
+            case Token.LOOP:
+            case Token.LABEL:
+            case Token.WITH:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void addSplitPart(List<Node> children, int first, int last) {
+        boolean[] used = null;
+        if (hasVarsInRegs && varRegisters != null) {
+            boolean[] u = used = new boolean[varRegisters.length];
+            for (int i = first; i <= last; ++i) {
+                forEachNode(
+                        children.get(i),
+                        n -> {
+                            int type = n.getType();
+                            if (type == Token.GETVAR
+                                    || type == Token.SETVAR
+                                    || type == Token.SETCONSTVAR) {
+                                u[fnCurrent.getVarIndex(n)] = true;
+                            } else if (type == Token.TYPEOFNAME) {
+                                int index = fnCurrent.fnode.getIndexForNameNode(n);
+                                if (index >= 0) {
+                                    u[index] = true;
+                                }
+                            }
+                        });
+            }
+        }
+        int usedCount = 0;
+        if (used != null) {
+            for (boolean u : used) {
+                if (u) ++usedCount;
+            }
+        }
+        int[] vars = new int[usedCount];
+        for (int i = 0, j = 0; j != usedCount; ++i) {
+            if (used[i]) {
+                vars[j++] = i;
+            }
+        }
+        SplitPart part =
+                new SplitPart(
+                        children.get(first),
+                        children.get(last),
+                        codegen.getBodyMethodName(scriptOrFn) + "_part" + (splitPartList.size() + 1),
+                        vars);
+        splitParts.put(part.first, part);
+        splitPartList.add(part);
+    }
+
+    /** Add the nodes elsewhere in the tree that the code generated for the node refers to. */
+    private static void addReferencedNodes(Node node, List<Node> refs) {
+        if (node instanceof Jump) {
+            Jump jump = (Jump) node;
+            if (jump.target != null) {
+                refs.add(jump.target);
+            }
+            if (node.getType() == Token.TRY && jump.getFinally() != null) {
+                refs.add(jump.getFinally());
+            } else if (node.getType() == Token.SWITCH && jump.getDefault() != null) {
+                refs.add(jump.getDefault());
+            }
+        }
+        Object localBlock = node.getProp(Node.LOCAL_BLOCK_PROP);
+        if (localBlock != null) {
+            refs.add((Node) localBlock);
+        }
+    }
+
+    private static void forEachNode(Node root, Consumer<Node> action) {
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            action.accept(node);
+            for (Node child = node.getFirstChild(); child != null; child = child.getNext()) {
+                stack.push(child);
+            }
+        }
+    }
+
+    /**
+     * Generate the call of a part of a split body. The variables that the part uses are passed in
+     * the frame array, and are read back from it afterwards. The part returns {@link
+     * OptRuntime#splitPartCompleted} unless it returns from the function.
+     */
+    private void generateSplitPartCall(SplitPart part) {
+        generateFrameStore(part.vars);
+        cfw.addALoad(contextLocal);
+        cfw.addALoad(funObjLocal);
+        cfw.addALoad(newTargetLocal);
+        cfw.addALoad(variableObjectLocal);
+        cfw.addALoad(thisObjLocal);
+        cfw.addALoad(argsLocal);
+        if (frameLocal >= 0) {
+            cfw.addALoad(frameLocal);
+        } else {
+            cfw.add(ByteCode.ACONST_NULL);
+        }
+        cfw.addInvoke(
+                ByteCode.INVOKESTATIC,
+                cfw.getClassName(),
+                part.methodName,
+                codegen.getSplitPartMethodSignature(scriptOrFn));
+        if (fnCurrent == null) {
+            cfw.add(ByteCode.POP);
+        } else {
+            int completed = cfw.acquireLabel();
+            cfw.add(ByteCode.DUP);
+            cfw.add(
+                    ByteCode.GETSTATIC,
+                    "org/mozilla/javascript/optimizer/OptRuntime",
+                    "splitPartCompleted",
+                    "Ljava/lang/Object;");
+            cfw.add(ByteCode.IF_ACMPEQ, completed);
+            if (epilogueLabel == -1) {
+                epilogueLabel = cfw.acquireLabel();
+            }
+            cfw.add(ByteCode.GOTO, epilogueLabel);
+            cfw.markLabel(completed);
+            cfw.add(ByteCode.POP);
+        }
+        generateFrameLoad(part.vars);
+    }
+
+    /** Generate the method that runs a part of a split body. */
+    private void generateSplitPart(SplitPart part) {
+        cfw.startMethod(
+                part.methodName,
+                codegen.getSplitPartMethodSignature(scriptOrFn),
+                (short) (ACC_STATIC | ACC_PRIVATE));
+        locals = new int[MAX_LOCALS];
+        argsLocal = 5;
+        frameLocal = 6;
+        firstFreeLocal = 7;
+        localsMax = firstFreeLocal;
+        popvLocal = -1;
+        itsZeroArgArray = -1;
+        itsOneArgArray = -1;
+        inlineRegisters = null;
+        inlineRegisterCount = 0;
+        epilogueLabel = cfw.acquireLabel();
+
+        if (fnCurrent == null) {
+            popvLocal = getNewWordLocal();
+        } else {
+            boolean[] constDeclarations = fnCurrent.fnode.getParamAndVarConst();
+            for (int i : part.vars) {
+                varRegisters[i] =
+                        fnCurrent.isNumberVar(i)
+                                ? getNewWordPairLocal(constDeclarations[i])
+                                : getNewWordLocal(constDeclarations[i]);
+            }
+            generateCallArgArrays();
+            generateInlineRegisters();
+        }
+        generateFrameLoad(part.vars);
+
+        for (Node node = part.first; ; node = node.getNext()) {
+            generateStatement(node);
+            if (node == part.last) {
+                break;
+            }
+        }
+
+        generateFrameStore(part.vars);
+        cfw.add(
+                ByteCode.GETSTATIC,
+                "org/mozilla/javascript/optimizer/OptRuntime",
+                "splitPartCompleted",
+                "Ljava/lang/Object;");
+        cfw.add(ByteCode.GOTO, epilogueLabel);
+
+        // A return statement in the part jumps here with its value
+        cfw.markLabel(epilogueLabel, (short) 1);
+        cfw.add(ByteCode.ARETURN);
+        cfw.stopMethod((short) (localsMax + 1));
+    }
+
+    /**
+     * Store the given variables in the frame array, or the result of a script. The initialization
+     * flag of a const variable goes after the values of the variables.
+     */
+    private void generateFrameStore(int[] vars) {
+        if (fnCurrent == null) {
+            cfw.addALoad(frameLocal);
+            cfw.addPush(0);
+            cfw.addALoad(popvLocal);
+            cfw.add(ByteCode.AASTORE);
+            return;
+        }
+        boolean[] constDeclarations = fnCurrent.fnode.getParamAndVarConst();
+        for (int i : vars) {
+            int reg = varRegisters[i];
+            boolean isNumber = fnCurrent.isNumberVar(i);
+            cfw.addALoad(frameLocal);
+            cfw.addPush(i);
+            if (isNumber) {
+                cfw.addDLoad(reg);
+                addDoubleWrap();
+            } else {
+                cfw.addALoad(reg);
+            }
+            cfw.add(ByteCode.AASTORE);
+            if (constDeclarations[i]) {
+                cfw.addALoad(frameLocal);
+                cfw.addPush(varRegisters.length + i);
+                cfw.addILoad(reg + (isNumber ? 2 : 1));
+                generateIntegerWrap();
+                cfw.add(ByteCode.AASTORE);
+            }
+        }
+    }
+
+    /** Load the given variables from the frame array, or the result of a script. */
+    private void generateFrameLoad(int[] vars) {
+        if (fnCurrent == null) {
+            cfw.addALoad(frameLocal);
+            cfw.addPush(0);
+            cfw.add(ByteCode.AALOAD);
+            cfw.addAStore(popvLocal);
+            return;
+        }
+        boolean[] constDeclarations = fnCurrent.fnode.getParamAndVarConst();
+        for (int i : vars) {
+            int reg = varRegisters[i];
+            boolean isNumber = fnCurrent.isNumberVar(i);
+            cfw.addALoad(frameLocal);
+            cfw.addPush(i);
+            cfw.add(ByteCode.AALOAD);
+            if (isNumber) {
+                cfw.add(ByteCode.CHECKCAST, "java/lang/Double");
+                cfw.addInvoke(ByteCode.INVOKEVIRTUAL, "java/lang/Double", "doubleValue", "()D");
+                cfw.addDStore(reg);
+            } else {
+                cfw.addAStore(reg);
+            }
+            if (constDeclarations[i]) {
+                cfw.addALoad(frameLocal);
+                cfw.addPush(varRegisters.length + i);
+                cfw.add(ByteCode.AALOAD);
+                cfw.add(ByteCode.CHECKCAST, "java/lang/Integer");
+                generateIntegerUnwrap();
+                cfw.addIStore(reg + (isNumber ? 2 : 1));
+            }
+        }
+    }
+
     private void generateNestedFunctionInits() {
         int functionCount = scriptOrFn.getFunctionCount();
         for (int i = 0; i != functionCount; i++) {
@@ -174,6 +683,9 @@ class BodyCodegen {
 
     private void initBodyGeneration() {
         varRegisters = null;
+        int32Registers = null;
+        inlineRegisters = null;
+        inlineRegisterCount = 0;
         if (scriptOrFn.getType() == Token.FUNCTION) {
             fnCurrent = OptFunctionNode.get(scriptOrFn);
             hasVarsInRegs = !fnCurrent.fnode.requiresActivation();
@@ -321,6 +833,8 @@ class BodyCodegen {
             addScriptRuntimeInvoke(
                     "enterFunctionStrictness", "(Lorg/mozilla/javascript/Context;Z)Z");
             cfw.addIStore(parentStrictnessLocal);
+
+            generateInlineRegisters();
         }
 
         if (hasVarsInRegs) {
@@ -379,6 +893,15 @@ class BodyCodegen {
                     reg = getNewWordPairLocal(constDeclarations[i]);
                     cfw.addPush(0.0);
                     cfw.addDStore(reg);
+                    // A split body has no int32 copy, as its parts could not deoptimize into it
+                    if (fnCurrent.isInt32Var(i) && splitBudget == 0) {
+                        if (int32Registers == null) {
+                            int32Registers = new int[varCount];
+                        }
+                        int32Registers[i] = getNewWordLocal();
+                        cfw.addPush(0);
+                        cfw.addIStore(int32Registers[i]);
+                    }
                 } else {
                     reg = getNewWordLocal(constDeclarations[i]);
                     if (firstUndefVar == -1) {
@@ -450,6 +973,9 @@ class BodyCodegen {
                             + ")V");
         } else {
             debugVariableName = "global";
+            if (loopEntries != null) {
+                generateLoopEntrySwitch();
+            }
             cfw.addALoad(funObjLocal);
             cfw.addALoad(thisObjLocal);
             cfw.addALoad(contextLocal);
@@ -481,33 +1007,58 @@ class BodyCodegen {
         }
 
         if (fnCurrent == null) {
-            // OPT: use dataflow to prove that this assignment is dead
-            popvLocal = getNewWordLocal();
-            Codegen.pushUndefined(cfw);
-            cfw.addAStore(popvLocal);
+            if (loopEntries == null) {
+                // OPT: use dataflow to prove that this assignment is dead
+                popvLocal = getNewWordLocal();
+                Codegen.pushUndefined(cfw);
+                cfw.addAStore(popvLocal);
+            }
 
             int linenum = scriptOrFn.getEndLineno();
             if (linenum != -1) addRemappedLineEntry(linenum, 1);
 
         } else {
-            if (fnCurrent.itsContainsCalls0) {
-                itsZeroArgArray = getNewWordLocal();
-                cfw.add(
-                        ByteCode.GETSTATIC,
-                        "org/mozilla/javascript/ScriptRuntime",
-                        "emptyArgs",
-                        "[Ljava/lang/Object;");
-                cfw.addAStore(itsZeroArgArray);
-            }
-            if (fnCurrent.itsContainsCalls1) {
-                itsOneArgArray = getNewWordLocal();
-                cfw.addPush(1);
-                cfw.add(ByteCode.ANEWARRAY, "java/lang/Object");
-                cfw.addAStore(itsOneArgArray);
+            generateCallArgArrays();
+        }
+    }
+
+    /**
+     * Give the parameters of inlined calls registers of their own, so that each register always
+     * holds the same type of value wherever the control flow merges.
+     */
+    private void generateInlineRegisters() {
+        int count = countInlineRegisters(scriptOrFn);
+        if (count != 0) {
+            inlineRegisters = new int[count];
+            for (int i = 0; i != count; ++i) {
+                int reg = getNewWordIntern(3);
+                Codegen.pushUndefined(cfw);
+                cfw.addAStore(reg);
+                cfw.addPush(0.0);
+                cfw.addDStore(reg + 1);
+                inlineRegisters[i] = reg;
             }
         }
     }
 
+    private void generateCallArgArrays() {
+        if (fnCurrent.itsContainsCalls0) {
+            itsZeroArgArray = getNewWordLocal();
+            cfw.add(
+                    ByteCode.GETSTATIC,
+                    "org/mozilla/javascript/ScriptRuntime",
+                    "emptyArgs",
+                    "[Ljava/lang/Object;");
+            cfw.addAStore(itsZeroArgArray);
+        }
+        if (fnCurrent.itsContainsCalls1) {
+            itsOneArgArray = getNewWordLocal();
+            cfw.addPush(1);
+            cfw.add(ByteCode.ANEWARRAY, "java/lang/Object");
+            cfw.addAStore(itsOneArgArray);
+        }
+    }
+
     private void generateGetGeneratorResumptionPoint() {
         cfw.addALoad(generatorStateLocal);
         cfw.add(
@@ -661,6 +1212,12 @@ class BodyCodegen {
 
     private void generateStatement(Node node) {
         updateLineNumber(node);
+        if (deoptTargets != null && !speculating) {
+            Integer deoptTarget = deoptTargets.get(node);
+            if (deoptTarget != null) {
+                cfw.markLabel(deoptTarget);
+            }
+        }
         int type = node.getType();
         Node child = node.getFirstChild();
         switch (type) {
@@ -677,6 +1234,12 @@ class BodyCodegen {
                     addInstructionCount(1);
                 }
                 while (child != null) {
+                    SplitPart part = splitParts == null ? null : splitParts.get(child);
+                    if (part != null) {
+                        generateSplitPartCall(part);
+                        child = part.last.getNext();
+                        continue;
+                    }
                     generateStatement(child);
                     child = child.getNext();
                 }
@@ -855,7 +1418,9 @@ class BodyCodegen {
                 break;
 
             case Token.EXPR_VOID:
-                if (child.getType() == Token.SETVAR) {
+                if (speculating && isInt32Update(child)) {
+                    visitInt32Update(node, child);
+                } else if (child.getType() == Token.SETVAR) {
                     /* special case this so as to avoid unnecessary
                     load's & pop's */
                     visitSetVar(child, child.getFirstChild(), false);
@@ -983,6 +1548,14 @@ class BodyCodegen {
     private void generateExpression(Node node, Node parent) {
         int type = node.getType();
         Node child = node.getFirstChild();
+        if (speculating
+                && type != Token.NUMBER
+                && type != Token.GETVAR
+                && isInt32Operand(node)) {
+            generateInt32Expression(node, -1);
+            cfw.add(ByteCode.L2D);
+            return;
+        }
         switch (type) {
             case Token.USE_STACK:
                 break;
@@ -1000,7 +1573,12 @@ class BodyCodegen {
                 break;
 
             case Token.NAME:
-                {
+                if (node.getIntProp(Node.CLOSURE_VAR_PROP, -1) != -1) {
+                    addClosureVarCoordinates(node);
+                    addScriptRuntimeInvoke(
+                            "getClosureVar",
+                            "(Lorg/mozilla/javascript/VarScope;" + "II" + ")Ljava/lang/Object;");
+                } else {
                     cfw.addALoad(variableObjectLocal);
                     cfw.addALoad(contextLocal);
                     addDynamicInvoke("NAME:GET:" + node.getString(), Signatures.NAME_GET);
@@ -2883,64 +3461,70 @@ class BodyCodegen {
         cfw.add(ByteCode.AALOAD);
         cfw.add(ByteCode.IF_ACMPNE, regularCall);
 
-        // stack: ... directFunct
-        if (type != Token.NEW) {
-            cfw.add(ByteCode.DUP);
-            cfw.addALoad(thisObjLocal);
-            cfw.addInvoke(
-                    ByteCode.INVOKEVIRTUAL,
-                    "org/mozilla/javascript/JSFunction",
-                    "getThisObj",
-                    "(Lorg/mozilla/javascript/Scriptable;)Lorg/mozilla/javascript/Scriptable;");
-            cfw.addAStore(thisObjLocal);
-        }
-        cfw.addALoad(contextLocal);
-        cfw.add(ByteCode.SWAP);
-        cfw.addALoad(newTargetLocal);
-        cfw.addALoad(variableObjectLocal);
-        // stack: ... cx directFunc new.target scope
-
-        if (type == Token.NEW) {
-            cfw.add(ByteCode.ACONST_NULL);
+        Node inlineExpression = getInlineExpression(node, target);
+        if (inlineExpression != null) {
+            cfw.add(ByteCode.POP);
+            visitInlinedCall(node, target, inlineExpression, firstArgChild);
         } else {
-            cfw.addALoad(thisObjLocal);
-        }
-        // stack: ... directFunc cx new.target scope thisObj
-        /*
-        Remember that directCall parameters are paired in 1 aReg and 1 dReg
-        If the argument is an incoming arg, just pass the orginal pair thru.
-        Else, if the argument is known to be typed 'Number', pass Void.TYPE
-        in the aReg and the number is the dReg
-        Else pass the JS object in the aReg and 0.0 in the dReg.
-        */
-        Node argChild = firstArgChild;
-        while (argChild != null) {
-            int dcp_register = nodeIsDirectCallParameter(argChild);
-            if (dcp_register >= 0) {
-                cfw.addALoad(dcp_register);
-                cfw.addDLoad(dcp_register + 1);
-            } else if (argChild.getIntProp(Node.ISNUMBER_PROP, -1) == Node.BOTH) {
-                cfw.add(ByteCode.GETSTATIC, "java/lang/Void", "TYPE", "Ljava/lang/Class;");
-                generateExpression(argChild, node);
+            // stack: ... directFunct
+            if (type != Token.NEW) {
+                cfw.add(ByteCode.DUP);
+                cfw.addALoad(thisObjLocal);
+                cfw.addInvoke(
+                        ByteCode.INVOKEVIRTUAL,
+                        "org/mozilla/javascript/JSFunction",
+                        "getThisObj",
+                        "(Lorg/mozilla/javascript/Scriptable;)Lorg/mozilla/javascript/Scriptable;");
+                cfw.addAStore(thisObjLocal);
+            }
+            cfw.addALoad(contextLocal);
+            cfw.add(ByteCode.SWAP);
+            cfw.addALoad(newTargetLocal);
+            cfw.addALoad(variableObjectLocal);
+            // stack: ... cx directFunc new.target scope
+
+            if (type == Token.NEW) {
+                cfw.add(ByteCode.ACONST_NULL);
             } else {
-                generateExpression(argChild, node);
-                cfw.addPush(0.0);
+                cfw.addALoad(thisObjLocal);
+            }
+            // stack: ... directFunc cx new.target scope thisObj
+            /*
+            Remember that directCall parameters are paired in 1 aReg and 1 dReg
+            If the argument is an incoming arg, just pass the orginal pair thru.
+            Else, if the argument is known to be typed 'Number', pass Void.TYPE
+            in the aReg and the number is the dReg
+            Else pass the JS object in the aReg and 0.0 in the dReg.
+            */
+            Node argChild = firstArgChild;
+            while (argChild != null) {
+                int dcp_register = nodeIsDirectCallParameter(argChild);
+                if (dcp_register >= 0) {
+                    cfw.addALoad(dcp_register);
+                    cfw.addDLoad(dcp_register + 1);
+                } else if (argChild.getIntProp(Node.ISNUMBER_PROP, -1) == Node.BOTH) {
+                    cfw.add(ByteCode.GETSTATIC, "java/lang/Void", "TYPE", "Ljava/lang/Class;");
+                    generateExpression(argChild, node);
+                } else {
+                    generateExpression(argChild, node);
+                    cfw.addPush(0.0);
+                }
+                argChild = argChild.getNext();
             }
-            argChild = argChild.getNext();
-        }
 
-        cfw.add(
-                ByteCode.GETSTATIC,
-                "org/mozilla/javascript/ScriptRuntime",
-                "emptyArgs",
-                "[Ljava/lang/Object;");
-        cfw.addInvoke(
-                ByteCode.INVOKESTATIC,
-                codegen.mainClassName,
-                (type == Token.NEW)
-                        ? codegen.getDirectCtorName(target.fnode)
-                        : codegen.getBodyMethodName(target.fnode),
-                codegen.getBodyMethodSignature(target.fnode));
+            cfw.add(
+                    ByteCode.GETSTATIC,
+                    "org/mozilla/javascript/ScriptRuntime",
+                    "emptyArgs",
+                    "[Ljava/lang/Object;");
+            cfw.addInvoke(
+                    ByteCode.INVOKESTATIC,
+                    codegen.mainClassName,
+                    (type == Token.NEW)
+                            ? codegen.getDirectCtorName(target.fnode)
+                            : codegen.getBodyMethodName(target.fnode),
+                    codegen.getBodyMethodSignature(target.fnode));
+        }
 
         cfw.add(ByteCode.GOTO, beyond);
 
@@ -2981,6 +3565,104 @@ class BodyCodegen {
         cfw.markLabel(beyond);
     }
 
+    /**
+     * Generate the expression that a small function returns in place of a direct call to it, once
+     * the caller has checked that it is calling the right function. The arguments are stored in
+     * registers laid out just like the parameters of the function's own body method, and the
+     * expression is then generated as if it was part of that method.
+     */
+    private void visitInlinedCall(
+            Node node, OptFunctionNode target, Node expression, Node argChild) {
+        boolean objectParams = !target.getParameterNumberContext();
+        int[] registers = new int[target.fnode.getParamCount()];
+        int base = inlineRegisterCount;
+        inlineRegisterCount += registers.length;
+        for (int i = 0; i != registers.length; ++i) {
+            int reg = inlineRegisters[base + i];
+            registers[i] = reg;
+            int dcp_register = nodeIsDirectCallParameter(argChild);
+            boolean isNumber = argChild.getIntProp(Node.ISNUMBER_PROP, -1) == Node.BOTH;
+            if (objectParams) {
+                if (dcp_register >= 0) {
+                    dcpLoadAsObject(dcp_register);
+                } else {
+                    generateExpression(argChild, node);
+                    if (isNumber) {
+                        addDoubleWrap();
+                    }
+                }
+            } else {
+                if (dcp_register >= 0) {
+                    cfw.addALoad(dcp_register);
+                    cfw.addDLoad(dcp_register + 1);
+                } else if (isNumber) {
+                    cfw.add(ByteCode.GETSTATIC, "java/lang/Void", "TYPE", "Ljava/lang/Class;");
+                    generateExpression(argChild, node);
+                } else {
+                    generateExpression(argChild, node);
+                    cfw.addPush(0.0);
+                }
+                cfw.addDStore(reg + 1);
+            }
+            cfw.addAStore(reg);
+            argChild = argChild.getNext();
+        }
+
+        OptFunctionNode savedFnCurrent = fnCurrent;
+        int[] savedVarRegisters = varRegisters;
+        boolean savedHasVarsInRegs = hasVarsInRegs;
+        boolean savedInDirectCallFunction = inDirectCallFunction;
+        boolean savedForcedObjectParameters = itsForcedObjectParameters;
+        boolean savedSpeculating = speculating;
+        fnCurrent = target;
+        varRegisters = registers;
+        hasVarsInRegs = true;
+        inDirectCallFunction = true;
+        itsForcedObjectParameters = objectParams;
+        speculating = false;
+
+        generateExpression(expression, node);
+
+        fnCurrent = savedFnCurrent;
+        varRegisters = savedVarRegisters;
+        hasVarsInRegs = savedHasVarsInRegs;
+        inDirectCallFunction = savedInDirectCallFunction;
+        itsForcedObjectParameters = savedForcedObjectParameters;
+        speculating = savedSpeculating;
+        inlineRegisterCount = base;
+    }
+
+    /**
+     * Return the expression to generate in place of a direct call, or null if the function has to
+     * be called.
+     */
+    private Node getInlineExpression(Node node, OptFunctionNode target) {
+        if (node.getType() != Token.CALL
+                || isGenerator
+                || target.fnode.isInStrictMode() != scriptOrFn.isInStrictMode()) {
+            return null;
+        }
+        return target.getInlineExpression();
+    }
+
+    /**
+     * Return the number of parameter registers needed by the inlined calls under the node, which
+     * is the most needed by calls that are inlined inside the arguments of one another.
+     */
+    private int countInlineRegisters(Node node) {
+        int count = 0;
+        for (Node child = node.getFirstChild(); child != null; child = child.getNext()) {
+            count = Math.max(count, countInlineRegisters(child));
+        }
+        if (node.getType() == Token.CALL) {
+            OptFunctionNode target = (OptFunctionNode) node.getProp(Node.DIRECTCALL_PROP);
+            if (target != null && getInlineExpression(node, target) != null) {
+                count += target.fnode.getParamCount();
+            }
+        }
+        return count;
+    }
+
     private void generateCallArgArray(Node node, Node argChild, boolean directCall) {
         int argCount = countArguments(argChild);
         // load array object to set arguments
@@ -3864,6 +4546,14 @@ class BodyCodegen {
                 }
                 break;
             case Token.NAME:
+                if (child.getIntProp(Node.CLOSURE_VAR_PROP, -1) != -1) {
+                    addClosureVarCoordinates(child);
+                    cfw.addPush(incrDecrMask);
+                    addScriptRuntimeInvoke(
+                            "closureVarIncrDecr",
+                            "(Lorg/mozilla/javascript/VarScope;" + "III" + ")Ljava/lang/Object;");
+                    break;
+                }
                 cfw.addALoad(variableObjectLocal);
                 cfw.addPush(child.getString()); // push name
                 cfw.addALoad(contextLocal);
@@ -4207,6 +4897,204 @@ class BodyCodegen {
         }
     }
 
+    private boolean isInt32Operand(Node node) {
+        int kind = Optimizer.int32Kind(fnCurrent, node);
+        return (kind & Optimizer.Int32Type) != 0 && (kind & Optimizer.Int32Guarded) == 0;
+    }
+
+    private boolean isInt32Update(Node node) {
+        int type = node.getType();
+        if (type == Token.SETVAR) {
+            return fnCurrent.isInt32Var(fnCurrent.getVarIndex(node));
+        }
+        return (type == Token.INC || type == Token.DEC)
+                && node.getFirstChild().getType() == Token.GETVAR
+                && fnCurrent.isInt32Var(fnCurrent.getVarIndex(node.getFirstChild()));
+    }
+
+    /**
+     * Generate a statement that assigns to, increments or decrements an int32 variable. If the new
+     * value is guarded, then a failed guard starts the statement over in the generic copy of the
+     * body, which is safe since guarded values have no side effects.
+     */
+    private void visitInt32Update(Node statement, Node node) {
+        // Statements start with an empty stack, though after a jump it may not be counted
+        // that way
+        int32StackBase = cfw.getStackTop();
+        int deoptLabel = -1;
+        int reg;
+        if (node.getType() == Token.SETVAR) {
+            reg = int32Registers[fnCurrent.getVarIndex(node)];
+            Node value = node.getLastChild();
+            if ((Optimizer.int32Kind(fnCurrent, value) & Optimizer.Int32Guarded) != 0) {
+                deoptLabel = acquireDeoptLabel(statement);
+            }
+            generateInt32Value(value, deoptLabel);
+        } else {
+            reg = int32Registers[fnCurrent.getVarIndex(node.getFirstChild())];
+            deoptLabel = acquireDeoptLabel(statement);
+            cfw.addILoad(reg);
+            cfw.add(ByteCode.I2L);
+            cfw.addPush(1L);
+            cfw.add(node.getType() == Token.INC ? ByteCode.LADD : ByteCode.LSUB);
+            addInt32Guard(deoptLabel);
+            cfw.add(ByteCode.L2I);
+        }
+        cfw.addIStore(reg);
+    }
+
+    // Like generateInt32Expression, but leave the value on the stack as an int
+    private void generateInt32Value(Node node, int deoptLabel) {
+        if (node.getType() == Token.NUMBER) {
+            cfw.addPush((int) node.getDouble());
+        } else if (node.getType() == Token.GETVAR) {
+            cfw.addILoad(int32Registers[fnCurrent.getVarIndex(node)]);
+        } else {
+            generateInt32Expression(node, deoptLabel);
+            cfw.add(ByteCode.L2I);
+        }
+    }
+
+    private int acquireDeoptLabel(Node statement) {
+        int target = cfw.acquireLabel();
+        int stub = cfw.acquireLabel();
+        deoptTargets.put(statement, target);
+        deoptStubs.add(new int[] {stub, target});
+        return stub;
+    }
+
+    /**
+     * Generate an expression that has {@link Optimizer#Int32Type}, leaving its value on the stack
+     * as a long. Failed guards pop the stack back to int32StackBase and jump to deoptLabel.
+     */
+    private void generateInt32Expression(Node node, int deoptLabel) {
+        int type = node.getType();
+        Node child = node.getFirstChild();
+        switch (type) {
+            case Token.NUMBER:
+                cfw.addPush((long) node.getDouble());
+                break;
+
+            case Token.GETVAR:
+                cfw.addILoad(int32Registers[fnCurrent.getVarIndex(node)]);
+                cfw.add(ByteCode.I2L);
+                break;
+
+            case Token.ADD:
+            case Token.SUB:
+                generateInt32Expression(child, deoptLabel);
+                generateInt32Expression(child.getNext(), deoptLabel);
+                cfw.add(type == Token.ADD ? ByteCode.LADD : ByteCode.LSUB);
+                addInt32Guard(deoptLabel);
+                break;
+
+            case Token.MUL:
+            case Token.MOD:
+                generateInt32Expression(child, deoptLabel);
+                generateInt32Expression(child.getNext(), deoptLabel);
+                addOptRuntimeInvoke(
+                        type == Token.MUL ? "multiplyInt32" : "remainderInt32", "(JJ)J");
+                addInt32Guard(deoptLabel);
+                break;
+
+            case Token.NEG:
+                generateInt32Expression(child, deoptLabel);
+                addOptRuntimeInvoke("negateInt32", "(J)J");
+                addInt32Guard(deoptLabel);
+                break;
+
+            case Token.BITNOT:
+                generateInt32Operand(child, node, false, deoptLabel);
+                cfw.addPush(-1L);
+                cfw.add(ByteCode.LXOR);
+                break;
+
+            case Token.BITAND:
+            case Token.BITOR:
+            case Token.BITXOR:
+            case Token.LSH:
+            case Token.RSH:
+                {
+                    int kind = Optimizer.int32Kind(fnCurrent, node);
+                    boolean impure = (kind & Optimizer.Int32Impure) != 0;
+                    generateInt32Operand(child, node, impure, deoptLabel);
+                    generateInt32Operand(child.getNext(), node, impure, deoptLabel);
+                    switch (type) {
+                        case Token.BITAND:
+                            cfw.add(ByteCode.LAND);
+                            break;
+                        case Token.BITOR:
+                            cfw.add(ByteCode.LOR);
+                            break;
+                        case Token.BITXOR:
+                            cfw.add(ByteCode.LXOR);
+                            break;
+                        case Token.LSH:
+                            cfw.add(ByteCode.L2I);
+                            cfw.addPush(31);
+                            cfw.add(ByteCode.IAND);
+                            cfw.add(ByteCode.LSHL);
+                            cfw.add(ByteCode.L2I);
+                            cfw.add(ByteCode.I2L);
+                            break;
+                        case Token.RSH:
+                            cfw.add(ByteCode.L2I);
+                            cfw.addPush(31);
+                            cfw.add(ByteCode.IAND);
+                            cfw.add(ByteCode.LSHR);
+                            break;
+                    }
+                }
+                break;
+
+            default:
+                throw Kit.codeBug(Token.typeToName(type));
+        }
+    }
+
+    /**
+     * Generate an operand of a bitwise operator, leaving its int32 value on the stack as a long.
+     * Operands that aren't int32 expressions, and guarded operands of an operator with side
+     * effects, are computed by the generic code and converted.
+     */
+    private void generateInt32Operand(Node node, Node parent, boolean generic, int deoptLabel) {
+        int kind = Optimizer.int32OperandKind(fnCurrent, node);
+        if ((kind & Optimizer.Int32Type) == 0
+                || (generic && (kind & Optimizer.Int32Guarded) != 0)) {
+            generateExpression(node, parent);
+            addScriptRuntimeInvoke("toInt32", "(D)I");
+            cfw.add(ByteCode.I2L);
+        } else if (Optimizer.isWrappingInt32(fnCurrent, node)) {
+            Node child = node.getFirstChild();
+            generateInt32Expression(child, deoptLabel);
+            generateInt32Expression(child.getNext(), deoptLabel);
+            cfw.add(node.getType() == Token.ADD ? ByteCode.LADD : ByteCode.LSUB);
+            cfw.add(ByteCode.L2I);
+            cfw.add(ByteCode.I2L);
+        } else {
+            generateInt32Expression(node, deoptLabel);
+        }
+    }
+
+    // Leave the long on top of the stack there if it is an int32, or else jump to deoptLabel
+    private void addInt32Guard(int deoptLabel) {
+        if (deoptLabel == -1) throw Codegen.badTree();
+        cfw.add(ByteCode.DUP2);
+        cfw.add(ByteCode.DUP2);
+        cfw.add(ByteCode.L2I);
+        cfw.add(ByteCode.I2L);
+        cfw.add(ByteCode.LCMP);
+        int isInt32 = cfw.acquireLabel();
+        cfw.add(ByteCode.IFEQ, isInt32);
+        int stack = cfw.getStackTop();
+        // Only int32 values, as longs, can be on the stack
+        for (int i = int32StackBase; i < stack; i += 2) {
+            cfw.add(ByteCode.POP2);
+        }
+        cfw.add(ByteCode.GOTO, deoptLabel);
+        cfw.markLabel(isInt32, stack);
+    }
+
     private int nodeIsDirectCallParameter(Node node) {
         if (node.getType() == Token.GETVAR && inDirectCallFunction && !itsForcedObjectParameters) {
             int varIndex = fnCurrent.getVarIndex(node);
@@ -4269,7 +5157,28 @@ class BodyCodegen {
         int childNumberFlag = node.getIntProp(Node.ISNUMBER_PROP, -1);
         int left_dcp_register = nodeIsDirectCallParameter(child);
         int right_dcp_register = nodeIsDirectCallParameter(rChild);
-        if (childNumberFlag != -1) {
+        if (speculating && isInt32Operand(child) && isInt32Operand(rChild)) {
+            generateInt32Expression(child, -1);
+            generateInt32Expression(rChild, -1);
+            cfw.add(ByteCode.LCMP);
+            switch (type) {
+                case Token.LE:
+                    cfw.add(ByteCode.IFLE, trueGOTO);
+                    break;
+                case Token.GE:
+                    cfw.add(ByteCode.IFGE, trueGOTO);
+                    break;
+                case Token.LT:
+                    cfw.add(ByteCode.IFLT, trueGOTO);
+                    break;
+                case Token.GT:
+                    cfw.add(ByteCode.IFGT, trueGOTO);
+                    break;
+                default:
+                    throw Codegen.badTree();
+            }
+            cfw.add(ByteCode.GOTO, falseGOTO);
+        } else if (childNumberFlag != -1) {
             // Force numeric context on both parameters and optimize
             // direct call case as Optimizer currently does not handle it
 
@@ -4427,6 +5336,10 @@ class BodyCodegen {
     }
 
     private void visitSetName(Node node, Node child) {
+        if (node.getIntProp(Node.CLOSURE_VAR_PROP, -1) != -1) {
+            visitSetClosureVar(node);
+            return;
+        }
         String name = node.getFirstChild().getString();
         while (child != null) {
             generateExpression(child, node);
@@ -4438,6 +5351,10 @@ class BodyCodegen {
     }
 
     private void visitStrictSetName(Node node, Node child) {
+        if (node.getIntProp(Node.CLOSURE_VAR_PROP, -1) != -1) {
+            visitSetClosureVar(node);
+            return;
+        }
         String name = node.getFirstChild().getString();
         while (child != null) {
             generateExpression(child, node);
@@ -4448,6 +5365,32 @@ class BodyCodegen {
         addDynamicInvoke("NAME:SETSTRICT:" + name, Signatures.NAME_SET_STRICT);
     }
 
+    /**
+     * Assign a variable of an enclosing activation that the optimizer has found by index. The
+     * BINDNAME child is not needed since the activation is already known.
+     */
+    private void visitSetClosureVar(Node node) {
+        generateExpression(node.getFirstChild().getNext(), node);
+        addClosureVarCoordinates(node);
+        addScriptRuntimeInvoke(
+                "setClosureVar",
+                "(Ljava/lang/Object;"
+                        + "Lorg/mozilla/javascript/VarScope;"
+                        + "II"
+                        + ")Ljava/lang/Object;");
+    }
+
+    /**
+     * Push the scope, and the depth and index of the variable from the node's {@link
+     * Node#CLOSURE_VAR_PROP}.
+     */
+    private void addClosureVarCoordinates(Node node) {
+        int coordinates = node.getExistingIntProp(Node.CLOSURE_VAR_PROP);
+        cfw.addALoad(variableObjectLocal);
+        cfw.addPush(coordinates >>> 16);
+        cfw.addPush(coordinates & 0xFFFF);
+    }
+
     private void visitSetConst(Node node, Node child) {
         String name = node.getFirstChild().getString();
         while (child != null) {
@@ -4472,6 +5415,9 @@ class BodyCodegen {
             } else {
                 dcpLoadAsObject(reg);
             }
+        } else if (speculating && fnCurrent.isInt32Var(varIndex)) {
+            cfw.addILoad(int32Registers[varIndex]);
+            cfw.add(ByteCode.I2D);
         } else if (fnCurrent.isNumberVar(varIndex)) {
             cfw.addDLoad(reg);
         } else {
@@ -4482,6 +5428,17 @@ class BodyCodegen {
     private void visitSetVar(Node node, Node child, boolean needValue) {
         if (!hasVarsInRegs) Kit.codeBug();
         int varIndex = fnCurrent.getVarIndex(node);
+        if (speculating && fnCurrent.isInt32Var(varIndex)) {
+            // Only statements can have guarded values, see visitInt32Update
+            int reg = int32Registers[varIndex];
+            generateInt32Value(child.getNext(), -1);
+            cfw.addIStore(reg);
+            if (needValue) {
+                cfw.addILoad(reg);
+                cfw.add(ByteCode.I2D);
+            }
+            return;
+        }
         generateExpression(child.getNext(), node);
         boolean isNumber = (node.getIntProp(Node.ISNUMBER_PROP, -1) != -1);
         int reg = varRegisters[varIndex];
@@ -4942,12 +5899,53 @@ class BodyCodegen {
 
     private boolean isGenerator;
     private int generatorSwitch;
+
+    // Registers of the int32 variables, or null if the function has none
+    private int[] int32Registers;
+    // True while generating the copy of the body that uses int32Registers
+    private boolean speculating;
+    // The statements that a failed int32 guard starts over in the generic copy, with their
+    // labels there
+    private Map<Node, Integer> deoptTargets;
+    // Pairs of the label that a failed int32 guard jumps to, and its label in deoptTargets
+    private List<int[]> deoptStubs;
+    // The stack top at the start of the statement that visitInt32Update is generating
+    private int int32StackBase;
+    // Parameter register pairs for inlined calls, and how many of them are in use
+    private int[] inlineRegisters;
+    private int inlineRegisterCount;
+    private List<Node> loopEntries;
     private int maxLocals = 0;
     private int maxStack = 0;
 
+    // The number of tree nodes in each part of a body that is split into several methods, or 0
+    // if the body is not split
+    int splitBudget;
+    // The parts of a split body, by their first statement and in order
+    private Map<Node, SplitPart> splitParts;
+    private List<SplitPart> splitPartList;
+    // The frame array that passes the variables in registers to the parts
+    private int frameLocal;
+
     private Map<Node, FinallyReturnPoint> finallys;
     private ArrayList<Node> literals;
 
+    /** A run of statements of a split body that is generated in a method of its own. */
+    private static final class SplitPart {
+        final Node first;
+        final Node last;
+        final String methodName;
+        // The variables in registers that the statements use
+        final int[] vars;
+
+        SplitPart(Node first, Node last, String methodName, int[] vars) {
+            this.first = first;
+            this.last = last;
+            this.methodName = methodName;
+            this.vars = vars;
+        }
+    }
+
     static class FinallyReturnPoint {
         public List<Integer> jsrPoints = new ArrayList<>();
         public int tableLabel = 0;
@@ -18,6 +18,7 @@ import jdk.dynalink.linker.support.CompositeTypeBasedGuardingDynamicLinker;
 import jdk.dynalink.support.ChainedCallSite;
 import org.mozilla.classfile.ByteCode;
 import org.mozilla.classfile.ClassFileWriter;
+import org.mozilla.javascript.config.RhinoConfig;
 
 /**
  * The Bootstrapper contains the method that is called by invokedynamic instructions in the bytecode
@@ -47,6 +48,12 @@ public class Bootstrapper {
 
     private static final DynamicLinker linker;
 
+    /**
+     * The number of guarded invocations that a call site will hold before it is considered
+     * megamorphic, at which point it will be relinked using only the generic implementation.
+     */
+    private static final int MAX_CHAIN_LENGTH = RhinoConfig.get("rhino.linker.maxChainLength", 8);
+
     static {
         // Set up the linkers that will map each call site to a method handle.
         DynamicLinkerFactory factory = new DynamicLinkerFactory();
@@ -61,6 +68,7 @@ public class Bootstrapper {
                 new CompositeTypeBasedGuardingDynamicLinker(
                         Arrays.asList(
                                 new ConstAwareLinker(),
+                                new ShapeLinker(),
                                 new BooleanLinker(),
                                 new IntegerLinker(),
                                 new DoubleLinker(),
@@ -92,11 +100,23 @@ public class Bootstrapper {
         Operation op = parseOperation(name);
 
         // ChainedCallSite lets a call site have a few options for complex situations.
-        // It caches up to eight invocations, so that we can quickly select the best
-        // implementation in situations where the same call site is invoked in different
-        // contexts.
+        // It caches up to eight invocations by default, so that we can quickly select the
+        // best implementation in situations where the same call site is invoked in different
+        // contexts, such as a property access that sees objects of several shapes.
         return linker.link(
-                new ChainedCallSite(dedupDesc(new CallSiteDescriptor(LOOKUP, op, mType))));
+                new RhinoCallSite(dedupDesc(new CallSiteDescriptor(LOOKUP, op, mType))));
+    }
+
+    /** A ChainedCallSite whose maximum chain length may be configured. */
+    private static final class RhinoCallSite extends ChainedCallSite {
+        RhinoCallSite(CallSiteDescriptor desc) {
+            super(desc);
+        }
+
+        @Override
+        protected int getMaxChainLength() {
+            return MAX_CHAIN_LENGTH;
+        }
     }
 
     private static CallSiteDescriptor dedupDesc(CallSiteDescriptor desc) {
@@ -0,0 +1,171 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.optimizer;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.mozilla.javascript.Node;
+import org.mozilla.javascript.Token;
+import org.mozilla.javascript.ast.FunctionNode;
+import org.mozilla.javascript.ast.ScriptNode;
+
+/**
+ * Finds the names in functions that can only refer to a parameter or variable of an enclosing
+ * function activation, and marks them with {@link Node#CLOSURE_VAR_PROP}. The value of the property
+ * is the number of scopes between the scope of the code and the activation, and the index of the
+ * variable in the activation, so that the generated code can get at the variable without looking
+ * up its name.
+ *
+ * <p>A name is only resolved when every scope it has to pass is known. So the search stops at any
+ * function that calls eval, since eval can declare new variables, and at any function defined
+ * inside a with statement, catch block or let block, since those add scopes that the code does not
+ * know about. Names used inside those blocks are not resolved either.
+ */
+class ClosureVarResolver {
+
+    private static final int MAX_INDEX = 0xFFFF;
+    private static final int MAX_DEPTH = 0x7FFF;
+
+    private final Map<ScriptNode, ScriptNode> parents = new IdentityHashMap<>();
+    private final Map<ScriptNode, Boolean> definedInsideWith = new IdentityHashMap<>();
+    private final Map<ScriptNode, Boolean> callsEval = new IdentityHashMap<>();
+    private final Map<ScriptNode, Map<String, Integer>> varIndexes = new IdentityHashMap<>();
+
+    void resolve(ScriptNode tree) {
+        scan_r(tree);
+        resolve_r(tree);
+    }
+
+    private void scan_r(ScriptNode scriptOrFn) {
+        scanNode(scriptOrFn, scriptOrFn, 0);
+        for (int i = 0; i != scriptOrFn.getFunctionCount(); ++i) {
+            FunctionNode fn = scriptOrFn.getFunctionNode(i);
+            parents.put(fn, scriptOrFn);
+            scan_r(fn);
+        }
+    }
+
+    private void scanNode(ScriptNode scriptOrFn, Node node, int withDepth) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNext()) {
+            switch (child.getType()) {
+                case Token.FUNCTION:
+                    if (withDepth != 0) {
+                        int index = child.getExistingIntProp(Node.FUNCTION_PROP);
+                        definedInsideWith.put(scriptOrFn.getFunctionNode(index), Boolean.TRUE);
+                    }
+                    break;
+                case Token.CALL:
+                    if (child.getIntProp(Node.SPECIALCALL_PROP, Node.NON_SPECIALCALL)
+                            == Node.SPECIALCALL_EVAL) {
+                        callsEval.put(scriptOrFn, Boolean.TRUE);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            scanNode(scriptOrFn, child, isScopeBlock(child) ? withDepth + 1 : withDepth);
+        }
+    }
+
+    private void resolve_r(ScriptNode scriptOrFn) {
+        if (scriptOrFn instanceof FunctionNode) {
+            FunctionNode fn = (FunctionNode) scriptOrFn;
+            if (!fn.isGenerator() && !fn.isES6Generator()) {
+                resolveNode(fn, fn);
+            }
+        }
+        for (int i = 0; i != scriptOrFn.getFunctionCount(); ++i) {
+            resolve_r(scriptOrFn.getFunctionNode(i));
+        }
+    }
+
+    private void resolveNode(FunctionNode fn, Node node) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNext()) {
+            switch (child.getType()) {
+                case Token.NAME:
+                    mark(fn, child, child.getString());
+                    break;
+                case Token.SETNAME:
+                case Token.STRICT_SETNAME:
+                    {
+                        Node bind = child.getFirstChild();
+                        if (bind.getType() == Token.BINDNAME) {
+                            mark(fn, child, bind.getString());
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (!isScopeBlock(child)) {
+                resolveNode(fn, child);
+            }
+        }
+    }
+
+    private void mark(FunctionNode fn, Node node, String name) {
+        int depth = 0;
+        ScriptNode scope = fn;
+        while (scope instanceof FunctionNode) {
+            FunctionNode f = (FunctionNode) scope;
+            if (f.requiresActivation()) {
+                Integer index = getVarIndexes(f).get(name);
+                if (index != null) {
+                    if (index >= 0 && index <= MAX_INDEX && depth <= MAX_DEPTH) {
+                        node.putIntProp(Node.CLOSURE_VAR_PROP, (depth << 16) | index);
+                    }
+                    return;
+                }
+                if (callsEval.containsKey(f)) {
+                    return;
+                }
+                ++depth;
+            } else if (getVarIndexes(f).containsKey(name)) {
+                return;
+            }
+            if (definedInsideWith.containsKey(f)) {
+                return;
+            }
+            scope = parents.get(f);
+        }
+    }
+
+    /**
+     * Return the index of each parameter and variable of the function by name. Names that can't be
+     * resolved to the activation's array of variables map to -1.
+     */
+    private Map<String, Integer> getVarIndexes(FunctionNode fn) {
+        Map<String, Integer> indexes = varIndexes.get(fn);
+        if (indexes == null) {
+            indexes = new HashMap<>();
+            String[] names = fn.getParamAndVarNames();
+            boolean[] consts = fn.getParamAndVarConst();
+            for (int i = 0; i != names.length; ++i) {
+                String name = names[i];
+                if (consts[i] || "arguments".equals(name) || indexes.containsKey(name)) {
+                    indexes.put(name, -1);
+                } else {
+                    indexes.put(name, i);
+                }
+            }
+            // Functions declared inside blocks are also stored in the activation
+            for (int i = 0; i != fn.getFunctionCount(); ++i) {
+                FunctionNode nested = fn.getFunctionNode(i);
+                if (nested.getFunctionType() == FunctionNode.FUNCTION_EXPRESSION_STATEMENT) {
+                    indexes.putIfAbsent(nested.getName(), -1);
+                }
+            }
+            varIndexes.put(fn, indexes);
+        }
+        return indexes;
+    }
+
+    /** Return true if the code inside the node runs with a scope that the compiler can't see. */
+    private static boolean isScopeBlock(Node node) {
+        int type = node.getType();
+        return type == Token.WITH || type == Token.DOTQUERY;
+    }
+}
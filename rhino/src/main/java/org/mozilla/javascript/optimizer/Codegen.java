@@ -12,6 +12,9 @@ import static org.mozilla.classfile.ClassFileWriter.ACC_PUBLIC;
 import static org.mozilla.classfile.ClassFileWriter.ACC_STATIC;
 import static org.mozilla.classfile.ClassFileWriter.ACC_VOLATILE;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -20,6 +23,7 @@ import java.util.Map;
 import java.util.regex.Pattern;
 import org.mozilla.classfile.ByteCode;
 import org.mozilla.classfile.ClassFileWriter;
+import org.mozilla.classfile.ClassFileWriter.ClassSizeException;
 import org.mozilla.javascript.CodeGenUtils;
 import org.mozilla.javascript.CompilationResult;
 import org.mozilla.javascript.CompilerEnvirons;
@@ -27,9 +31,12 @@ import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Evaluator;
 import org.mozilla.javascript.Function;
 import org.mozilla.javascript.GeneratedClassLoader;
+import org.mozilla.javascript.JSCode;
 import org.mozilla.javascript.JSDescriptor;
 import org.mozilla.javascript.JSFunction;
 import org.mozilla.javascript.JSScript;
+import org.mozilla.javascript.LazyFunctionCode;
+import org.mozilla.javascript.Node;
 import org.mozilla.javascript.RhinoException;
 import org.mozilla.javascript.Script;
 import org.mozilla.javascript.ScriptOrFn;
@@ -160,6 +167,117 @@ public class Codegen implements Evaluator {
         return JSFunction.createFunction(cx, scope, desc, null, staticSecurityDomain);
     }
 
+    @Override
+    public boolean writeCompilationResult(CompilationResult<?> compiled, DataOutput out)
+            throws IOException {
+        CodegenCompilationResult<?> result = (CodegenCompilationResult<?>) compiled;
+        out.writeUTF(result.className);
+        out.writeBoolean(result.builderEnv.hasRegExpLiterals);
+        out.writeBoolean(result.builderEnv.hasTemplateLiterals);
+        out.writeInt(result.bytecode.length);
+        out.write(result.bytecode);
+        writeBuilder(result.builder, out);
+        return true;
+    }
+
+    @Override
+    public <T extends ScriptOrFn<T>> CompilationResult<T> readCompilationResult(
+            DataInput in, CompilerEnvirons compilerEnv, String rawSource) throws IOException {
+        String className = in.readUTF();
+        MHJSCode.BuilderEnv builderEnv = new MHJSCode.BuilderEnv(className);
+        builderEnv.hasRegExpLiterals = in.readBoolean();
+        builderEnv.hasTemplateLiterals = in.readBoolean();
+        byte[] bytecode = new byte[in.readInt()];
+        in.readFully(bytecode);
+        JSDescriptor.Builder<T> builder = new JSDescriptor.Builder<>();
+        builder.securityController = compilerEnv.securityController();
+        builder.securityDomain = compilerEnv.securityDomain();
+        LazyFunctionCode.Origin lazyOrigin =
+                compilerEnv.isLazyFunctionBodies()
+                        ? new LazyFunctionCode.Origin(rawSource, compilerEnv)
+                        : null;
+        readBuilder(builder, builderEnv, lazyOrigin, rawSource, in);
+        return new CodegenCompilationResult<>(builder, className, bytecode, builderEnv);
+    }
+
+    /**
+     * Write everything in the builder that came from the tree. The security controller and domain
+     * are not written, since they belong to the code that loads the result.
+     */
+    private static void writeBuilder(JSDescriptor.Builder<?> builder, DataOutput out)
+            throws IOException {
+        boolean isLazy = builder.code instanceof LazyFunctionCode.Builder;
+        out.writeBoolean(isLazy);
+        if (isLazy) {
+            ((LazyFunctionCode.Builder) builder.code).write(out);
+        } else {
+            MHJSCode.Builder<?> code = (MHJSCode.Builder<?>) builder.code;
+            out.writeBoolean(code instanceof MHJSFunctionCode.Builder);
+            out.writeInt(code.index);
+            out.writeUTF(code.methodName);
+            out.writeUTF(code.methodType);
+            writeNullableString(code.resumeName, out);
+            writeNullableString(code.resumeType, out);
+        }
+        // The constructor is either the code itself or nothing
+        out.writeBoolean(builder.constructor == builder.code);
+
+        builder.writeFields(out);
+
+        out.writeInt(builder.nestedFunctions.size());
+        for (JSDescriptor.Builder<?> child : builder.nestedFunctions) {
+            writeBuilder(child, out);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void readBuilder(
+            JSDescriptor.Builder builder,
+            MHJSCode.BuilderEnv builderEnv,
+            LazyFunctionCode.Origin lazyOrigin,
+            String rawSource,
+            DataInput in)
+            throws IOException {
+        JSCode.Builder code;
+        if (in.readBoolean()) {
+            if (lazyOrigin == null) {
+                throw new IOException("Lazy function in an entry without lazy functions");
+            }
+            code = LazyFunctionCode.Builder.read(in, lazyOrigin);
+        } else {
+            MHJSCode.Builder mhCode =
+                    in.readBoolean()
+                            ? new MHJSFunctionCode.Builder(builderEnv)
+                            : new MHJSScriptCode.Builder(builderEnv);
+            mhCode.index = in.readInt();
+            mhCode.methodName = in.readUTF();
+            mhCode.methodType = in.readUTF();
+            mhCode.resumeName = readNullableString(in);
+            mhCode.resumeType = readNullableString(in);
+            code = mhCode;
+        }
+        builder.setCode(code);
+        builder.constructor = in.readBoolean() ? code : new JSCode.NullBuilder();
+
+        builder.readFields(in, rawSource);
+
+        int nestedCount = in.readInt();
+        for (int i = 0; i != nestedCount; ++i) {
+            readBuilder(builder.createChildBuilder(), builderEnv, lazyOrigin, rawSource, in);
+        }
+    }
+
+    private static void writeNullableString(String s, DataOutput out) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
     private <T extends ScriptOrFn<T>> JSDescriptor<T> defineClass(
             CodegenCompilationResult<T> compiled, Object staticSecurityDomain) {
         // The generated classes in this case refer only to Rhino classes
@@ -225,6 +343,9 @@ public class Codegen implements Evaluator {
 
         this.mainClassName = mainClassName;
         this.mainClassSignature = ClassFileWriter.classNameToSignature(mainClassName);
+        if (compilerEnv.isLazyFunctionBodies()) {
+            lazyOrigin = new LazyFunctionCode.Origin(rawSource, compilerEnv);
+        }
 
         initScriptNodesData(scriptOrFn, builder, builderEnv);
 
@@ -248,7 +369,9 @@ public class Codegen implements Evaluator {
             int functionCount = tree.getFunctionCount();
             for (int i = 0; i != functionCount; ++i) {
                 OptFunctionNode ofn = OptFunctionNode.get(tree, i);
-                if (ofn.fnode.getFunctionType() == FunctionNode.FUNCTION_STATEMENT) {
+                // A lazy function's body is compiled separately, so it can't be called directly
+                if (ofn.fnode.getFunctionType() == FunctionNode.FUNCTION_STATEMENT
+                        && !ofn.fnode.isLazy()) {
                     String name = ofn.fnode.getName();
                     if (name.length() != 0) {
                         if (possibleDirectCalls == null) {
@@ -267,7 +390,8 @@ public class Codegen implements Evaluator {
         OptTransformer ot = new OptTransformer(possibleDirectCalls, directCallTargets);
         ot.transform(tree, compilerEnv);
 
-        new Optimizer().optimize(tree);
+        new Optimizer(compilerEnv.getInlineThreshold()).optimize(tree);
+        new ClosureVarResolver().resolve(tree);
     }
 
     private static void initOptFunctions_r(ScriptNode scriptOrFn) {
@@ -305,6 +429,19 @@ public class Codegen implements Evaluator {
             List<ScriptNode> x,
             List<JSDescriptor.Builder<?>> b) {
 
+        if (n instanceof FunctionNode && ((FunctionNode) n).isLazy()) {
+            // The body is compiled when the function is first called, so only the descriptor
+            // is generated here
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            JSCode.Builder<U> code =
+                    (JSCode.Builder) new LazyFunctionCode.Builder(lazyOrigin, (FunctionNode) n);
+            builder.setCode(code);
+            CodeGenUtils.setConstructor(builder, n);
+            x.add(n);
+            b.add(builder);
+            return;
+        }
+
         @SuppressWarnings("unchecked")
         MHJSCode.Builder<U> code =
                 (MHJSCode.Builder<U>)
@@ -317,6 +454,13 @@ public class Codegen implements Evaluator {
         if (isGenerator(n)) {
             code.resumeName = code.methodName + "_gen";
             code.resumeType = GENERATOR_METHOD_SIGNATURE;
+        } else if (n.getType() == Token.SCRIPT && compilerEnv.isGenerateLoopEntries()) {
+            List<Node> entries = CodeGenUtils.findLoopEntries(n);
+            if (!entries.isEmpty()) {
+                loopEntries = entries;
+                code.resumeName = code.methodName + "_osr";
+                code.resumeType = LOOP_ENTRY_METHOD_SIGNATURE;
+            }
         }
         builder.setCode(code);
         builderEnv.hasRegExpLiterals |= (n.getRegexpCount() > 0);
@@ -404,7 +548,53 @@ public class Codegen implements Evaluator {
         // 5: this, cx, js function, new.target, scope, js this, args[]
     }
 
+    /**
+     * Generate the class. When the body of a script or function is too big for one method, the
+     * class is generated again with that body split into several methods, with smaller parts each
+     * time the parts are still too big.
+     */
     private byte[] generateCode(String rawSource) {
+        int[] splitBudgets = null;
+        while (true) {
+            currentBodyIndex = -1;
+            try {
+                return generateCode(rawSource, splitBudgets);
+            } catch (ClassSizeException e) {
+                int index = currentBodyIndex;
+                if (index == -1 || !canSplit(scriptOrFnNodes[index])) {
+                    throw e;
+                }
+                if (splitBudgets == null) {
+                    splitBudgets = new int[scriptOrFnNodes.length];
+                }
+                int budget = splitBudgets[index] == 0 ? SPLIT_BUDGET : splitBudgets[index] / 2;
+                if (budget < MIN_SPLIT_BUDGET) {
+                    throw e;
+                }
+                splitBudgets[index] = budget; System.err.println("DBG split " + index + " " + budget + " " + e.getMessage());
+                if (scriptOrFnNodes[index].getType() == Token.SCRIPT && loopEntries != null) {
+                    // The loops could be in any of the parts, so the script can't start at one
+                    loopEntries = null;
+                    MHJSCode.Builder<?> code = (MHJSCode.Builder<?>) builders[index].code;
+                    code.resumeName = null;
+                    code.resumeType = null;
+                }
+                for (ScriptNode n : scriptOrFnNodes) {
+                    BodyCodegen.resetTargets_r(n);
+                }
+            }
+        }
+    }
+
+    private static boolean canSplit(ScriptNode n) {
+        if (isGenerator(n)) {
+            return false;
+        }
+        // The parameters of a function that is called directly are in registers of two types
+        return n.getType() != Token.FUNCTION || !OptFunctionNode.get(n).isTargetOfDirectCall();
+    }
+
+    private byte[] generateCode(String rawSource, int[] splitBudgets) {
         boolean hasScript = (scriptOrFnNodes[0].getType() == Token.SCRIPT);
         boolean hasFunctions = (scriptOrFnNodes.length > 1 || !hasScript);
         boolean isStrictMode = scriptOrFnNodes[0].isInStrictMode();
@@ -422,6 +612,9 @@ public class Codegen implements Evaluator {
         int count = scriptOrFnNodes.length;
         for (int i = 0; i != count; ++i) {
             ScriptNode n = scriptOrFnNodes[i];
+            if (n instanceof FunctionNode && ((FunctionNode) n).isLazy()) {
+                continue;
+            }
 
             BodyCodegen bodygen = new BodyCodegen();
             bodygen.cfw = cfw;
@@ -437,7 +630,13 @@ public class Codegen implements Evaluator {
                 bodygen.scriptOrFnClass = "org.mozilla.javascript.JSScript";
             }
 
+            if (splitBudgets != null) {
+                bodygen.splitBudget = splitBudgets[i];
+            }
+
+            currentBodyIndex = i;
             bodygen.generateBodyCode();
+            currentBodyIndex = -1;
 
             if (n.getType() == Token.FUNCTION) {
                 OptFunctionNode ofn = OptFunctionNode.get(n);
@@ -900,6 +1099,18 @@ public class Codegen implements Evaluator {
     }
 
     String getNonDirectBodyMethodSIgnature(ScriptNode n) {
+        return getNonDirectBodyMethodSIgnature(n, "");
+    }
+
+    /**
+     * Return the signature of the methods that the parts of a split body are generated in, which
+     * take a frame array after the arguments.
+     */
+    String getSplitPartMethodSignature(ScriptNode n) {
+        return getNonDirectBodyMethodSIgnature(n, "[Ljava/lang/Object;");
+    }
+
+    private static String getNonDirectBodyMethodSIgnature(ScriptNode n, String extraParams) {
         StringBuilder sb = new StringBuilder();
         sb.append('(');
         sb.append("Lorg/mozilla/javascript/Context;");
@@ -910,7 +1121,7 @@ public class Codegen implements Evaluator {
         }
         sb.append(
                 "Ljava/lang/Object;" + "Lorg/mozilla/javascript/VarScope;" + "Ljava/lang/Object;");
-        sb.append("[Ljava/lang/Object;)Ljava/lang/Object;");
+        sb.append("[Ljava/lang/Object;").append(extraParams).append(")Ljava/lang/Object;");
         return sb.toString();
     }
 
@@ -998,13 +1209,31 @@ public class Codegen implements Evaluator {
                     + "I"
                     + "Ljava/lang/Object;)Ljava/lang/Object;";
 
+    static final String LOOP_ENTRY_METHOD_SIGNATURE =
+            "("
+                    + "Lorg/mozilla/javascript/Context;"
+                    + "Lorg/mozilla/javascript/JSScript;"
+                    + "Ljava/lang/Object;"
+                    + "Lorg/mozilla/javascript/VarScope;"
+                    + "I"
+                    + "Ljava/lang/Object;)Ljava/lang/Object;";
+
     private static final Object globalLock = new Object();
     private static int globalSerialClassCounter;
 
+    // The number of tree nodes in each part of a split body, at first and at least
+    private static final int SPLIT_BUDGET = 4000;
+    private static final int MIN_SPLIT_BUDGET = 250;
+
     private CompilerEnvirons compilerEnv;
+    private LazyFunctionCode.Origin lazyOrigin;
+    // The index of the body that is being generated, or -1
+    private int currentBodyIndex = -1;
 
     private List<OptFunctionNode> directCallTargets;
     ScriptNode[] scriptOrFnNodes;
+    // Starts of the loops that the script's loop entry method can jump to, if it has one
+    List<Node> loopEntries;
     JSDescriptor.Builder[] builders;
     private HashMap<ScriptNode, Integer> scriptOrFnIndexes;
 
@@ -7,14 +7,16 @@ import org.mozilla.classfile.ByteCode;
 import org.mozilla.classfile.ClassFileWriter;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.JSCodeExec;
+import org.mozilla.javascript.JSCodeResume;
 import org.mozilla.javascript.JSScript;
 import org.mozilla.javascript.VarScope;
 
 /** Subclass of {@link JSCode} for compiled Java methods. */
 public class MHJSScriptCode extends MHJSCode<JSScript> {
     private final JSCodeExec<JSScript> exec;
+    private final JSCodeResume<JSScript> resume;
 
-    protected MHJSScriptCode(MethodHandle execMH) {
+    protected MHJSScriptCode(MethodHandle execMH, MethodHandle resumeMH) {
         exec =
                 (cx, xobj, newTarget, scope, thisObj, args) -> {
                     try {
@@ -25,6 +27,23 @@ public class MHJSScriptCode extends MHJSCode<JSScript> {
                         throw (RuntimeException) e;
                     }
                 };
+        // Scripts can only be resumed at the start of a loop, and only if they were compiled
+        // with loop entries.
+        resume =
+                resumeMH != null
+                        ? (cx, xobj, state, scope, operation, value) -> {
+                            try {
+                                return resumeMH.invokeExact(
+                                        cx, xobj, state, scope, operation, value);
+                            } catch (Error e) {
+                                throw e;
+                            } catch (Throwable e) {
+                                throw (RuntimeException) e;
+                            }
+                        }
+                        : (cx, xobj, state, scope, operation, value) -> {
+                            throw new UnsupportedOperationException();
+                        };
     }
 
     @Override
@@ -46,7 +65,7 @@ public class MHJSScriptCode extends MHJSCode<JSScript> {
             VarScope scope,
             int operation,
             Object value) {
-        throw new UnsupportedOperationException();
+        return resume.resume(cx, executableObject, state, scope, operation, value);
     }
 
     public static class Builder extends MHJSCode.Builder<JSScript> {
@@ -57,7 +76,7 @@ public class MHJSScriptCode extends MHJSCode<JSScript> {
 
         @Override
         protected MHJSCode<JSScript> buildCode(MethodHandle exec, MethodHandle resume) {
-            return new MHJSScriptCode(exec);
+            return new MHJSScriptCode(exec, resume);
         }
 
         @Override
@@ -70,6 +89,13 @@ public class MHJSScriptCode extends MHJSCode<JSScript> {
             cfw.addLoadConstantClass(mainClass);
             cfw.addLoadConstant(methodName);
             cfw.addLoadConstant(methodType);
+            if (resumeName == null) {
+                cfw.add(ByteCode.ACONST_NULL);
+                cfw.add(ByteCode.ACONST_NULL);
+            } else {
+                cfw.addLoadConstant(resumeName);
+                cfw.addLoadConstant(resumeType);
+            }
             var className = MHJSScriptCode.class.getName();
             var signature = className.replaceAll("\\.", "/");
             var type =
@@ -78,6 +104,8 @@ public class MHJSScriptCode extends MHJSCode<JSScript> {
                                     Lookup.class,
                                     Class.class,
                                     String.class,
+                                    String.class,
+                                    String.class,
                                     String.class)
                             .toMethodDescriptorString();
             cfw.addInvoke(ByteCode.INVOKESTATIC, signature, "makeJSCode", type);
@@ -85,7 +113,12 @@ public class MHJSScriptCode extends MHJSCode<JSScript> {
     }
 
     public static MHJSScriptCode makeJSCode(
-            Lookup lookup, Class<?> clazz, String methodName, String methodType) {
+            Lookup lookup,
+            Class<?> clazz,
+            String methodName,
+            String methodType,
+            String resumeName,
+            String resumeType) {
         try {
             MethodHandle exec =
                     lookup.findStatic(
@@ -93,7 +126,16 @@ public class MHJSScriptCode extends MHJSCode<JSScript> {
                             methodName,
                             MethodType.fromMethodDescriptorString(
                                     methodType, clazz.getClassLoader()));
-            return new MHJSScriptCode(exec);
+            MethodHandle resume = null;
+            if (resumeName != null) {
+                resume =
+                        lookup.findStatic(
+                                clazz,
+                                resumeName,
+                                MethodType.fromMethodDescriptorString(
+                                        resumeType, clazz.getClassLoader()));
+            }
+            return new MHJSScriptCode(exec, resume);
         } catch (NoSuchMethodException | IllegalAccessException e) {
             throw new Error("Gnerated class did not contain expected methods", e);
         }
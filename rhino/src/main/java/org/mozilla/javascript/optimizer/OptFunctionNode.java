@@ -74,6 +74,39 @@ public final class OptFunctionNode {
         numberVarFlags[varIndex] = true;
     }
 
+    /**
+     * Return true if the variable is a number variable that only ever holds int32 values, unless
+     * an arithmetic operation overflows, so that the body of the function may keep it in an int
+     * register. See {@link Optimizer#int32Kind}.
+     */
+    public boolean isInt32Var(int varIndex) {
+        varIndex -= fnode.getParamCount();
+        if (varIndex >= 0 && int32VarFlags != null) {
+            return int32VarFlags[varIndex];
+        }
+        return false;
+    }
+
+    public boolean hasInt32Vars() {
+        return int32VarFlags != null;
+    }
+
+    void setInt32VarFlags(boolean[] int32VarFlags) {
+        this.int32VarFlags = int32VarFlags;
+    }
+
+    /**
+     * Return the expression that the function returns if calls to it may be replaced by the
+     * expression itself, or null. See {@link Optimizer#inlineSize}.
+     */
+    public Node getInlineExpression() {
+        return inlineExpression;
+    }
+
+    void setInlineExpression(Node inlineExpression) {
+        this.inlineExpression = inlineExpression;
+    }
+
     public int getVarIndex(Node n) {
         int index = n.getIntProp(Node.VARIABLE_PROP, -1);
         if (index == -1) {
@@ -96,6 +129,8 @@ public final class OptFunctionNode {
     public final FunctionNode fnode;
 
     private boolean[] numberVarFlags;
+    private boolean[] int32VarFlags;
+    private Node inlineExpression;
     private int directTargetIndex = -1;
     private boolean itsParameterNumberContext;
     boolean itsContainsCalls0;
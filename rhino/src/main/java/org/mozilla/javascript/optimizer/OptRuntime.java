@@ -26,6 +26,12 @@ public final class OptRuntime extends ScriptRuntime {
     public static final Integer oneObj = Integer.valueOf(1);
     public static final Integer minusOneObj = Integer.valueOf(-1);
 
+    /**
+     * Returned by a part of a function or script body that was split into several methods when the
+     * statements of the part complete normally, as opposed to returning from the function.
+     */
+    public static final Object splitPartCompleted = new Object();
+
     /** Implement ....() call shrinking optimizer code. */
     public static Object call0(Callable fun, Scriptable thisObj, Context cx, VarScope scope) {
         return fun.call(cx, scope, thisObj, ScriptRuntime.emptyArgs);
@@ -196,6 +202,39 @@ public final class OptRuntime extends ScriptRuntime {
         return Double.valueOf(num);
     }
 
+    /*
+     * The int32 helpers below take and return longs so that the codegen can check every result
+     * the same way. A result that is not an int32 means that the exact answer is not one either,
+     * and the codegen switches to double arithmetic.
+     */
+
+    public static long multiplyInt32(long a, long b) {
+        long result = a * b;
+        if (result == 0 && (a | b) < 0) {
+            // The result is -0
+            return Long.MIN_VALUE;
+        }
+        return result;
+    }
+
+    public static long remainderInt32(long a, long b) {
+        if (b == 0) {
+            // The result is NaN
+            return Long.MIN_VALUE;
+        }
+        long result = a % b;
+        if (result == 0 && a < 0) {
+            // The result is -0
+            return Long.MIN_VALUE;
+        }
+        return result;
+    }
+
+    public static long negateInt32(long a) {
+        // -0 is not an int32
+        return a == 0 ? Long.MIN_VALUE : -a;
+    }
+
     static String encodeIntArray(int[] array) {
         // XXX: this extremely inefficient for small integers
         if (array == null) {
@@ -5,9 +5,12 @@
 package org.mozilla.javascript.optimizer;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.mozilla.javascript.Node;
 import org.mozilla.javascript.Token;
+import org.mozilla.javascript.ast.FunctionNode;
 import org.mozilla.javascript.ast.ScriptNode;
 
 class Optimizer {
@@ -18,6 +21,19 @@ class Optimizer {
 
     // It is assumed that (NumberType | AnyType) == AnyType
 
+    // Flags returned by int32Kind()
+    static final int Int32Type = 1;
+    static final int Int32Impure = 2;
+    static final int Int32Guarded = 4;
+
+    // Functions with more nodes than this are not given int32 variables, since their body is
+    // generated twice.
+    private static final int MAX_INT32_FUNCTION_NODES = 2000;
+
+    Optimizer(int inlineThreshold) {
+        this.inlineThreshold = inlineThreshold;
+    }
+
     void optimize(ScriptNode scriptOrFn) {
         //  run on one function at a time for now
         int functionCount = scriptOrFn.getFunctionCount();
@@ -53,9 +69,313 @@ class Optimizer {
                 rewriteForNumberVariables(theStatementNode, NumberType);
             }
             theFunction.setParameterNumberContext(parameterUsedInNumberContext);
+
+            findInt32Vars(theFunction);
+            if (inDirectCallFunction) {
+                findInlineExpression(theFunction, inlineThreshold);
+            }
+        }
+    }
+
+    /*
+            A direct call to a function whose body is a single return statement may be
+            replaced by the expression that it returns, with the parameters in registers
+            of the caller. The expression must only read the parameters, so that it means
+            the same wherever it is generated, and it must not call anything, so that the
+            function cannot be recursive. Number typing in the expression was done for the
+            function's own body, which the inlined copy shares.
+    */
+    private static void findInlineExpression(OptFunctionNode f, int threshold) {
+        FunctionNode fnode = f.fnode;
+        if (threshold <= 0
+                || fnode.isGenerator()
+                || fnode.isES6Generator()
+                || fnode.hasRestParameter()
+                || fnode.getFunctionCount() != 0
+                || fnode.getParamAndVarCount() != fnode.getParamCount()) {
+            return;
+        }
+        Node body = fnode.getFirstChild();
+        if (body == null || body.getNext() != null || body.getType() != Token.BLOCK) return;
+        Node ret = body.getFirstChild();
+        if (ret == null || ret.getNext() != null || ret.getType() != Token.RETURN) return;
+        Node expression = ret.getFirstChild();
+        if (expression == null) return;
+        int size = inlineSize(f, expression);
+        if (size > 0 && size <= threshold) {
+            f.setInlineExpression(expression);
+        }
+    }
+
+    /**
+     * Return the number of nodes in the expression, or -1 if it contains something that stops it
+     * from being inlined in another function.
+     */
+    static int inlineSize(OptFunctionNode f, Node n) {
+        switch (n.getType()) {
+            case Token.GETVAR:
+                return f.isParameter(f.getVarIndex(n)) ? 1 : -1;
+            case Token.NUMBER:
+            case Token.STRING:
+            case Token.TRUE:
+            case Token.FALSE:
+            case Token.NULL:
+                return 1;
+            case Token.GETPROP:
+            case Token.GETELEM:
+                if (n.getIntProp(Node.SUPER_PROPERTY_ACCESS, 0) == 1) return -1;
+                break;
+            case Token.ADD:
+            case Token.SUB:
+            case Token.MUL:
+            case Token.DIV:
+            case Token.MOD:
+            case Token.EXP:
+            case Token.NEG:
+            case Token.POS:
+            case Token.BITAND:
+            case Token.BITOR:
+            case Token.BITXOR:
+            case Token.BITNOT:
+            case Token.LSH:
+            case Token.RSH:
+            case Token.URSH:
+            case Token.EQ:
+            case Token.NE:
+            case Token.SHEQ:
+            case Token.SHNE:
+            case Token.LT:
+            case Token.LE:
+            case Token.GT:
+            case Token.GE:
+            case Token.NOT:
+            case Token.AND:
+            case Token.OR:
+            case Token.HOOK:
+            case Token.TYPEOF:
+            case Token.TO_OBJECT:
+            case Token.TO_DOUBLE:
+                break;
+            default:
+                return -1;
+        }
+        int size = 1;
+        for (Node child = n.getFirstChild(); child != null; child = child.getNext()) {
+            int childSize = inlineSize(f, child);
+            if (childSize < 0) return -1;
+            size += childSize;
+        }
+        return size;
+    }
+
+    /*
+            Number variables that are only ever assigned int32 values are kept in int
+            registers by the codegen, which speculates that the arithmetic on them does
+            not overflow. An operation that might overflow, or produce -0, is guarded, and
+            when a guard fails the function carries on in a generic copy of its body that
+            keeps the variables in double registers. The generic copy starts over at the
+            statement that failed, so a guarded assignment must be a statement of its own,
+            and the expression that it assigns must have no side effects.
+    */
+    private static void findInt32Vars(OptFunctionNode f) {
+        FunctionNode fnode = f.fnode;
+        if (fnode.isGenerator()) return;
+        int paramCount = fnode.getParamCount();
+        int varCount = fnode.getParamAndVarCount();
+        boolean[] constDeclarations = fnode.getParamAndVarConst();
+        boolean[] flags = new boolean[varCount - paramCount];
+        boolean found = false;
+        for (int i = paramCount; i != varCount; ++i) {
+            if (f.isNumberVar(i) && !constDeclarations[i]) {
+                flags[i - paramCount] = true;
+                found = true;
+            }
+        }
+        if (!found || !canRestartStatements(fnode, new int[1])) return;
+
+        Set<Node> restartable = new HashSet<>();
+        buildRestartableList_r(fnode, restartable);
+        ArrayList<Node> updates = new ArrayList<>();
+        buildInt32UpdateList_r(f, fnode, updates);
+
+        f.setInt32VarFlags(flags);
+        boolean changed;
+        do {
+            changed = false;
+            for (Node update : updates) {
+                int varIndex;
+                boolean ok;
+                if (update.getType() == Token.SETVAR) {
+                    varIndex = f.getVarIndex(update);
+                    int kind = int32Kind(f, update.getLastChild());
+                    ok =
+                            (kind & Int32Type) != 0
+                                    && ((kind & Int32Guarded) == 0
+                                            || restartable.contains(update));
+                } else {
+                    varIndex = f.getVarIndex(update.getFirstChild());
+                    ok = restartable.contains(update);
+                }
+                if (!ok && f.isInt32Var(varIndex)) {
+                    flags[varIndex - paramCount] = false;
+                    changed = true;
+                }
+            }
+        } while (changed);
+
+        for (boolean flag : flags) {
+            if (flag) return;
+        }
+        f.setInt32VarFlags(null);
+    }
+
+    private static boolean canRestartStatements(Node node, int[] count) {
+        switch (node.getType()) {
+            case Token.TRY:
+            case Token.FINALLY:
+            case Token.JSR:
+            case Token.ENTERWITH:
+            case Token.YIELD:
+            case Token.YIELD_STAR:
+                return false;
+        }
+        if (++count[0] > MAX_INT32_FUNCTION_NODES) return false;
+        for (Node child = node.getFirstChild(); child != null; child = child.getNext()) {
+            if (!canRestartStatements(child, count)) return false;
+        }
+        return true;
+    }
+
+    // Collect the updates of number variables that the int32 guards could restart, which
+    // are the SETVAR, INC and DEC nodes directly under statements that the codegen starts
+    // with an empty stack.
+    private static void buildRestartableList_r(Node node, Set<Node> updates) {
+        int type = node.getType();
+        if (type == Token.BLOCK
+                || type == Token.LOOP
+                || type == Token.LABEL
+                || type == Token.FUNCTION) {
+            Node child = node.getFirstChild();
+            while (child != null) {
+                buildRestartableList_r(child, updates);
+                child = child.getNext();
+            }
+        } else if (type == Token.EXPR_VOID) {
+            updates.add(node.getFirstChild());
         }
     }
 
+    private static void buildInt32UpdateList_r(OptFunctionNode f, Node node, List<Node> updates) {
+        int type = node.getType();
+        if (type == Token.SETVAR) {
+            if (f.isNumberVar(f.getVarIndex(node))) {
+                updates.add(node);
+            }
+        } else if ((type == Token.INC || type == Token.DEC)
+                && node.getFirstChild().getType() == Token.GETVAR) {
+            if (f.isNumberVar(f.getVarIndex(node.getFirstChild()))) {
+                updates.add(node);
+            }
+        }
+        for (Node child = node.getFirstChild(); child != null; child = child.getNext()) {
+            buildInt32UpdateList_r(f, child, updates);
+        }
+    }
+
+    /**
+     * Return the int32 flags of an expression in a function whose int32 variables are known. If
+     * {@link #Int32Type} is set then the value of the expression is always an int32, and the
+     * codegen can compute it with integer arithmetic. {@link #Int32Impure} is set if some operands
+     * have to be computed by the generic code and converted, and {@link #Int32Guarded} if some
+     * operation might overflow or produce -0, in which case the expression has no side effects.
+     */
+    static int int32Kind(OptFunctionNode f, Node n) {
+        if (n.getIntProp(Node.ISNUMBER_PROP, -1) != Node.BOTH) {
+            return 0;
+        }
+        switch (n.getType()) {
+            case Token.NUMBER:
+                {
+                    double d = n.getDouble();
+                    if (d == (int) d && (d != 0.0 || 1 / d > 0)) {
+                        return Int32Type;
+                    }
+                    return 0;
+                }
+
+            case Token.GETVAR:
+                return f.isInt32Var(f.getVarIndex(n)) ? Int32Type : 0;
+
+            case Token.ADD:
+            case Token.SUB:
+            case Token.MUL:
+            case Token.MOD:
+                if (isPureInt32(int32Kind(f, n.getFirstChild()))
+                        && isPureInt32(int32Kind(f, n.getLastChild()))) {
+                    return Int32Type | Int32Guarded;
+                }
+                return 0;
+
+            case Token.NEG:
+                if (isPureInt32(int32Kind(f, n.getFirstChild()))) {
+                    return Int32Type | Int32Guarded;
+                }
+                return 0;
+
+            case Token.BITNOT:
+                return Int32Type | int32OperandKind(f, n.getFirstChild());
+
+            case Token.BITAND:
+            case Token.BITOR:
+            case Token.BITXOR:
+            case Token.LSH:
+            case Token.RSH:
+                {
+                    int kind =
+                            int32OperandKind(f, n.getFirstChild())
+                                    | int32OperandKind(f, n.getLastChild());
+                    if ((kind & Int32Impure) != 0) {
+                        // Any guarded operands are computed by the generic code
+                        return Int32Type | Int32Impure;
+                    }
+                    return kind | Int32Type;
+                }
+
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Return the int32 flags of an operand of a bitwise operator, which only needs the value of
+     * the operand modulo 2^32. Adding or subtracting two int32 values gives an exact result that
+     * way, so those operations don't need to be guarded.
+     */
+    static int int32OperandKind(OptFunctionNode f, Node n) {
+        if (isWrappingInt32(f, n)) {
+            int kind = int32Kind(f, n.getFirstChild()) | int32Kind(f, n.getLastChild());
+            return Int32Type | (kind & Int32Guarded);
+        }
+        int kind = int32Kind(f, n);
+        return kind != 0 ? kind : Int32Impure;
+    }
+
+    /**
+     * Return true if the node adds or subtracts two pure int32 expressions, so that as an operand
+     * of a bitwise operator it can wrap around instead of being guarded.
+     */
+    static boolean isWrappingInt32(OptFunctionNode f, Node n) {
+        int type = n.getType();
+        return (type == Token.ADD || type == Token.SUB)
+                && n.getIntProp(Node.ISNUMBER_PROP, -1) == Node.BOTH
+                && isPureInt32(int32Kind(f, n.getFirstChild()))
+                && isPureInt32(int32Kind(f, n.getLastChild()));
+    }
+
+    static boolean isPureInt32(int kind) {
+        return (kind & (Int32Type | Int32Impure)) == Int32Type;
+    }
+
     /*
             Each directCall parameter is passed as a pair of values - an object
             and a double. The value passed depends on the type of value available at
@@ -440,6 +760,7 @@ class Optimizer {
         }
     }
 
+    private final int inlineThreshold;
     private boolean inDirectCallFunction;
     OptFunctionNode theFunction;
     private boolean parameterUsedInNumberContext;
@@ -0,0 +1,277 @@
+package org.mozilla.javascript.optimizer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import jdk.dynalink.StandardNamespace;
+import jdk.dynalink.StandardOperation;
+import jdk.dynalink.linker.GuardedInvocation;
+import jdk.dynalink.linker.LinkRequest;
+import jdk.dynalink.linker.LinkerServices;
+import jdk.dynalink.linker.TypeBasedGuardingDynamicLinker;
+import jdk.dynalink.linker.support.Guards;
+import org.mozilla.javascript.Callable;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Shape;
+import org.mozilla.javascript.ShapedAccess;
+import org.mozilla.javascript.Undefined;
+import org.mozilla.javascript.VarScope;
+
+/**
+ * This linker implements inline caches for named property access on objects that use shapes. When
+ * a property is found on an object, or on the object's immediate prototype, it links a guard that
+ * checks the class and shape of the receiver, plus an invocation that goes straight to the offset
+ * where the property was found rather than looking it up by name.
+ *
+ * <p>Because each call site is a ChainedCallSite, a site that sees objects of a few different
+ * shapes will link one guarded invocation per shape. Once the site has seen too many of them it
+ * becomes "unstable," at which point this linker gives up and lets the DefaultLinker link the
+ * generic lookup.
+ *
+ * <p>Objects only have shapes when {@link Context#FEATURE_SHAPED_OBJECTS} is enabled. Otherwise
+ * this linker will never link anything.
+ */
+@SuppressWarnings("AndroidJdkLibsChecker")
+class ShapeLinker implements TypeBasedGuardingDynamicLinker {
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    @Override
+    public boolean canLinkType(Class<?> type) {
+        return ShapedAccess.isCacheableClass(type);
+    }
+
+    @Override
+    public GuardedInvocation getGuardedInvocation(LinkRequest req, LinkerServices svc)
+            throws Exception {
+        if (req.isCallSiteUnstable()) {
+            return null;
+        }
+
+        ParsedOperation op = new ParsedOperation(req.getCallSiteDescriptor().getOperation());
+        if (!op.isNamespace(StandardNamespace.PROPERTY)) {
+            return null;
+        }
+
+        Object receiver = req.getReceiver();
+        Shape shape = ShapedAccess.getShape(receiver);
+        if (shape == null) {
+            return null;
+        }
+
+        MethodType mType = req.getCallSiteDescriptor().getMethodType();
+        String name = op.getName();
+        int offset = shape.getOffset(name);
+
+        if (op.isOperation(StandardOperation.SET)) {
+            // Only writes to existing properties are cached, since anything else changes
+            // the shape of the receiver.
+            if (offset < 0) {
+                return null;
+            }
+            MethodHandle mh =
+                    lookup.findStatic(
+                            ShapeLinker.class,
+                            "setOwn",
+                            MethodType.methodType(
+                                    Object.class,
+                                    int.class,
+                                    String.class,
+                                    Object.class,
+                                    Object.class,
+                                    Context.class,
+                                    VarScope.class));
+            mh = MethodHandles.insertArguments(mh, 0, offset, name);
+            return link(op, "own", mh, ownGuard(receiver, shape, mType));
+        }
+
+        MethodHandle finisher = getFinisher(op, mType);
+        if (finisher == null) {
+            return null;
+        }
+        finisher = MethodHandles.insertArguments(finisher, 0, name);
+
+        if (offset >= 0) {
+            MethodHandle getter =
+                    lookup.findStatic(
+                            ShapeLinker.class,
+                            "getOwn",
+                            MethodType.methodType(Object.class, int.class, Object.class));
+            getter = MethodHandles.insertArguments(getter, 0, offset);
+            MethodHandle mh = MethodHandles.foldArguments(finisher, getter);
+            return link(op, "own", mh, ownGuard(receiver, shape, mType));
+        }
+
+        // Not found on the object, so try one level up the prototype chain, which covers
+        // methods defined on the prototype of a constructor.
+        Scriptable proto = ((ScriptableObject) receiver).getPrototype();
+        Shape protoShape = ShapedAccess.getShape(proto);
+        if (protoShape == null) {
+            return null;
+        }
+        int protoOffset = protoShape.getOffset(name);
+        if (protoOffset < 0) {
+            return null;
+        }
+
+        MethodHandle getter =
+                lookup.findStatic(
+                        ShapeLinker.class,
+                        "getFromPrototype",
+                        MethodType.methodType(Object.class, int.class, Object.class));
+        getter = MethodHandles.insertArguments(getter, 0, protoOffset);
+        MethodHandle mh = MethodHandles.foldArguments(finisher, getter);
+
+        MethodHandle guard =
+                lookup.findStatic(
+                        ShapeLinker.class,
+                        "testPrototypeShape",
+                        MethodType.methodType(
+                                boolean.class,
+                                Class.class,
+                                Shape.class,
+                                WeakReference.class,
+                                Shape.class,
+                                Object.class));
+        guard =
+                MethodHandles.insertArguments(
+                        guard,
+                        0,
+                        receiver.getClass(),
+                        shape,
+                        new WeakReference<>(proto),
+                        protoShape);
+        return link(op, "prototype", mh, Guards.asType(guard, mType));
+    }
+
+    private static GuardedInvocation link(
+            ParsedOperation op, String kind, MethodHandle mh, MethodHandle guard) {
+        if (DefaultLinker.DEBUG) {
+            System.out.println(op + ": shaped " + kind + " property");
+        }
+        return new GuardedInvocation(mh, guard);
+    }
+
+    private static MethodHandle ownGuard(Object receiver, Shape shape, MethodType mType)
+            throws NoSuchMethodException, IllegalAccessException {
+        MethodHandle guard =
+                lookup.findStatic(
+                        ShapeLinker.class,
+                        "testShape",
+                        MethodType.methodType(
+                                boolean.class, Class.class, Shape.class, Object.class));
+        guard = MethodHandles.insertArguments(guard, 0, receiver.getClass(), shape);
+        return Guards.asType(guard, mType);
+    }
+
+    /**
+     * Return a method handle that takes the name, the value found at the cached offset, and the
+     * original arguments of the call site, and returns the result of the operation.
+     */
+    private static MethodHandle getFinisher(ParsedOperation op, MethodType mType)
+            throws NoSuchMethodException, IllegalAccessException {
+        String methodName;
+        if (op.isOperation(StandardOperation.GET)) {
+            methodName = "finishGet";
+        } else if (op.isOperation(RhinoOperation.GETNOWARN)) {
+            methodName = "finishGetNoWarn";
+        } else if (op.isOperation(RhinoOperation.GETWITHTHIS)) {
+            methodName = "finishGetWithThis";
+        } else if (op.isOperation(RhinoOperation.GETWITHTHISOPTIONAL)) {
+            methodName = "finishGetWithThisOptional";
+        } else {
+            return null;
+        }
+        return lookup.findStatic(
+                ShapeLinker.class,
+                methodName,
+                mType.insertParameterTypes(0, String.class, Object.class));
+    }
+
+    @SuppressWarnings("unused")
+    private static boolean testShape(Class<?> cls, Shape shape, Object receiver) {
+        return receiver != null
+                && receiver.getClass() == cls
+                && ShapedAccess.getShapeUnchecked((ScriptableObject) receiver) == shape;
+    }
+
+    @SuppressWarnings("unused")
+    private static boolean testPrototypeShape(
+            Class<?> cls,
+            Shape shape,
+            WeakReference<Scriptable> protoRef,
+            Shape protoShape,
+            Object receiver) {
+        if (!testShape(cls, shape, receiver)) {
+            return false;
+        }
+        Scriptable proto = ((ScriptableObject) receiver).getPrototype();
+        // The class of the prototype can't change, so we only need to check its shape.
+        return proto != null
+                && proto == protoRef.get()
+                && ShapedAccess.getShapeUnchecked((ScriptableObject) proto) == protoShape;
+    }
+
+    @SuppressWarnings("unused")
+    private static Object getOwn(int offset, Object receiver) {
+        ScriptableObject obj = (ScriptableObject) receiver;
+        return ShapedAccess.getValue(obj, offset, obj);
+    }
+
+    @SuppressWarnings("unused")
+    private static Object getFromPrototype(int offset, Object receiver) {
+        ScriptableObject obj = (ScriptableObject) receiver;
+        return ShapedAccess.getValue((ScriptableObject) obj.getPrototype(), offset, obj);
+    }
+
+    @SuppressWarnings("unused")
+    private static Object finishGet(
+            String name, Object value, Object receiver, Context cx, VarScope scope) {
+        if (value == Scriptable.NOT_FOUND) {
+            return ScriptRuntime.getObjectProp(receiver, name, cx, scope);
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unused")
+    private static Object finishGetNoWarn(
+            String name, Object value, Object receiver, Context cx, VarScope scope) {
+        if (value == Scriptable.NOT_FOUND) {
+            return ScriptRuntime.getObjectPropNoWarn(receiver, name, cx, scope);
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unused")
+    private static ScriptRuntime.LookupResult finishGetWithThis(
+            String name, Object value, Object receiver, Context cx, VarScope scope) {
+        if (value == Scriptable.NOT_FOUND) {
+            return ScriptRuntime.getPropAndThis(receiver, name, cx, scope);
+        }
+        return ShapedAccess.newLookupResult(value, (Scriptable) receiver, name);
+    }
+
+    @SuppressWarnings("unused")
+    private static ScriptRuntime.LookupResult finishGetWithThisOptional(
+            String name, Object value, Object receiver, Context cx, VarScope scope) {
+        if (value == Scriptable.NOT_FOUND) {
+            return ScriptRuntime.getPropAndThisOptional(receiver, name, cx, scope);
+        }
+        if (!(value instanceof Callable) && (value == null || Undefined.isUndefined(value))) {
+            return null;
+        }
+        return ShapedAccess.newLookupResult(value, (Scriptable) receiver, name);
+    }
+
+    @SuppressWarnings("unused")
+    private static Object setOwn(
+            int offset, String name, Object receiver, Object value, Context cx, VarScope scope) {
+        if (ShapedAccess.setValue((ScriptableObject) receiver, offset, value)) {
+            return value;
+        }
+        return ScriptRuntime.setObjectProp(receiver, name, value, cx, scope);
+    }
+}
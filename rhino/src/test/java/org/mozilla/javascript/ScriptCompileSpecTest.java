@@ -6,7 +6,10 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import org.junit.jupiter.api.AfterEach;
@@ -106,6 +109,54 @@ public class ScriptCompileSpecTest {
         assertEquals(15, ((Number) result).intValue());
     }
 
+    @Test
+    public void testCompileFromReaderWithoutKeepingSource() throws Exception {
+        StringBuilder code = new StringBuilder("var s = 0;\n");
+        // Longer than the tokenizer's buffer, and with a surrogate pair at the end of the line
+        code.append("var long = '");
+        for (int i = 0; i < 20000; i++) {
+            code.append('x');
+        }
+        code.append("\ud83d\ude00'; s += long.length;\n");
+        code.append("var t = `a\r\nb${1 + 1}`; s += t.length;\n");
+        code.append("function add(a, b) { return a + b; }\n");
+        code.append("s = add(s, 1); s + ' ' + add.toString().includes('[native code]');");
+
+        cx.setEvaluationMethod(Context.EvaluationMethod.Interpreter);
+        cx.setGeneratingSource(false);
+        ScriptCompileSpec spec =
+                ScriptCompileSpec.fromReader(new StringReader(code.toString()))
+                        .sourceName("stream.js")
+                        .build();
+        Script script = cx.compileScript(spec);
+
+        Object result =
+                script.exec(cx, scope, ScriptableObject.getTopLevelScope(scope).getGlobalThis());
+        assertEquals("20007 true", result);
+        assertThrows(IllegalStateException.class, spec::getSource);
+    }
+
+    @Test
+    public void testReaderErrorIsReported() {
+        Reader failing =
+                new Reader() {
+                    @Override
+                    public int read(char[] buf, int off, int len) throws IOException {
+                        throw new IOException("read failed");
+                    }
+
+                    @Override
+                    public void close() {}
+                };
+
+        cx.setEvaluationMethod(Context.EvaluationMethod.Interpreter);
+        cx.setGeneratingSource(false);
+        assertThrows(
+                UncheckedIOException.class,
+                () -> cx.compileScript(ScriptCompileSpec.fromReader(failing).build()));
+        assertThrows(IOException.class, () -> cx.compileReader(failing, "fail.js", 1, null));
+    }
+
     @Test
     public void testErrorReportsSourceNameAndLineno() {
         EvaluatorException ex =
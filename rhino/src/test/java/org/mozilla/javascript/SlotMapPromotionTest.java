@@ -1,6 +1,9 @@
 package org.mozilla.javascript;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import java.util.function.Supplier;
 import org.junit.jupiter.api.Test;
@@ -63,6 +66,83 @@ class SlotMapPromotionTest {
                 ThreadSafeHashSlotMap.class);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void promotionFromShapedEmptyToShaped() {
+        assertPromotes(
+                () -> (SlotMap<Scriptable>) SlotMapOwner.SHAPED_EMPTY_SLOT_MAP,
+                ShapedSlotMap.class);
+    }
+
+    @Test
+    public void promotionFromShapedToEmbeddedOnIndex() {
+        ScriptableObject obj = new TestScriptableObject();
+        obj.setMap(new ShapedSlotMap<>());
+        obj.put("a", obj, 1);
+        obj.put("b", obj, 2);
+        assertEquals(ShapedSlotMap.class, obj.getMap().getClass());
+
+        obj.put(0, obj, "zero");
+        assertEquals(EmbeddedSlotMap.class, obj.getMap().getClass());
+        assertEquals(1, obj.get("a", obj));
+        assertEquals(2, obj.get("b", obj));
+        assertEquals("zero", obj.get(0, obj));
+    }
+
+    @Test
+    public void promotionFromShapedToEmbeddedOnDelete() {
+        ScriptableObject obj = new TestScriptableObject();
+        obj.setMap(new ShapedSlotMap<>());
+        obj.put("a", obj, 1);
+        obj.put("b", obj, 2);
+        obj.put("c", obj, 3);
+
+        obj.delete("b");
+        assertEquals(EmbeddedSlotMap.class, obj.getMap().getClass());
+        assertArrayEquals(new Object[] {"a", "c"}, obj.getIds());
+    }
+
+    @Test
+    public void promotionFromShapedToEmbeddedWhenLarge() {
+        ScriptableObject obj = new TestScriptableObject();
+        obj.setMap(new ShapedSlotMap<>());
+        for (int i = 0; i < Shape.MAX_PROPERTIES; i++) {
+            obj.put("p" + i, obj, i);
+        }
+        assertEquals(ShapedSlotMap.class, obj.getMap().getClass());
+
+        obj.put("xxx", obj, "one more property");
+        assertEquals(EmbeddedSlotMap.class, obj.getMap().getClass());
+        assertEquals(Shape.MAX_PROPERTIES + 1, obj.getMap().size());
+        assertEquals(0, obj.get("p0", obj));
+        assertEquals("one more property", obj.get("xxx", obj));
+    }
+
+    @Test
+    public void shapesAreShared() {
+        ScriptableObject o1 = new TestScriptableObject();
+        ScriptableObject o2 = new TestScriptableObject();
+        o1.setMap(new ShapedSlotMap<>());
+        o2.setMap(new ShapedSlotMap<>());
+        o1.put("x", o1, 1);
+        o1.put("y", o1, 2);
+        o2.put("x", o2, 3);
+        o2.put("y", o2, 4);
+
+        var s1 = ((ShapedSlotMap<Scriptable>) o1.getMap()).getShape();
+        var s2 = ((ShapedSlotMap<Scriptable>) o2.getMap()).getShape();
+        assertSame(s1, s2);
+        assertEquals(1, s1.getOffset("y"));
+        assertEquals(3, o2.get("x", o2));
+
+        // Different insertion order means a different shape
+        ScriptableObject o3 = new TestScriptableObject();
+        o3.setMap(new ShapedSlotMap<>());
+        o3.put("y", o3, 5);
+        o3.put("x", o3, 6);
+        assertNotSame(s1, ((ShapedSlotMap<Scriptable>) o3.getMap()).getShape());
+    }
+
     private static void fillToCapacity(int size, EmbeddedSlotMap<Scriptable> map) {
         for (int i = 0; i < size; ++i) {
             map.add(null, new Slot<Scriptable>(Integer.toString(i), i, 0));
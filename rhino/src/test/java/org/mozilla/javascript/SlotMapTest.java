@@ -52,7 +52,9 @@ public class SlotMapTest {
                                 new SlotMapOwner.ThreadSafeSingleEntrySlotMap<Scriptable>(
                                         new Slot<Scriptable>(new Object(), 0, 0)),
                         () -> new ThreadSafeEmbeddedSlotMap<>(),
-                        () -> new ThreadSafeHashSlotMap<>());
+                        () -> new ThreadSafeHashSlotMap<>(),
+                        () -> (SlotMap<Scriptable>) SlotMapOwner.SHAPED_EMPTY_SLOT_MAP,
+                        () -> new ShapedSlotMap<>());
         return suppliers.stream().map(i -> new Object[] {i}).collect(Collectors.toList());
     }
 
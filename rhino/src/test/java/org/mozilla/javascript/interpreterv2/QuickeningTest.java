@@ -0,0 +1,79 @@
+package org.mozilla.javascript.interpreterv2;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.mozilla.javascript.CallFrameV2;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.interpreterv2.instruction.Instruction;
+
+public class QuickeningTest {
+
+    private static class FakeInstruction extends Instruction {
+        @Override
+        public void interpret(Context cx, CallFrameV2 frame) {}
+
+        @Override
+        public int stackChange() {
+            return 0;
+        }
+    }
+
+    private static CompilerData<?> build(Instruction... instructions) {
+        CompilerData.Builder<?> b = new CompilerData.Builder<>();
+        b.instructions = instructions;
+        return b.build();
+    }
+
+    @Test
+    public void quickenReplacesInstruction() {
+        Instruction generic = new FakeInstruction();
+        Instruction quickened = new FakeInstruction();
+        CompilerData<?> cData = build(new FakeInstruction(), generic);
+
+        assertTrue(cData.canQuicken(1));
+        assertTrue(cData.quicken(1, generic, quickened));
+        assertSame(quickened, cData.getInstructions()[1]);
+    }
+
+    @Test
+    public void quickenChecksCurrentInstruction() {
+        Instruction generic = new FakeInstruction();
+        Instruction other = new FakeInstruction();
+        CompilerData<?> cData = build(generic);
+
+        assertFalse(cData.quicken(0, other, new FakeInstruction()));
+        assertSame(generic, cData.getInstructions()[0]);
+    }
+
+    @Test
+    public void deoptimizeRestoresGeneric() {
+        Instruction generic = new FakeInstruction();
+        Instruction quickened = new FakeInstruction();
+        CompilerData<?> cData = build(generic);
+
+        cData.quicken(0, generic, quickened);
+        cData.deoptimize(0, quickened, generic);
+        assertSame(generic, cData.getInstructions()[0]);
+        assertTrue(cData.canQuicken(0));
+    }
+
+    @Test
+    public void stopQuickeningAfterRepeatedDeoptimization() {
+        Instruction generic = new FakeInstruction();
+        CompilerData<?> cData = build(new FakeInstruction(), generic);
+
+        for (int i = 0; i < CompilerData.MAX_DEOPTIMIZATIONS; i++) {
+            Instruction quickened = new FakeInstruction();
+            assertTrue(cData.quicken(1, generic, quickened));
+            cData.deoptimize(1, quickened, generic);
+        }
+        assertFalse(cData.canQuicken(1));
+        assertFalse(cData.quicken(1, generic, new FakeInstruction()));
+        assertSame(generic, cData.getInstructions()[1]);
+        // Other instructions are not affected
+        assertTrue(cData.canQuicken(0));
+    }
+}
@@ -0,0 +1,212 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.mozilla.javascript.CodeCache;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Context.EvaluationMethod;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.TopLevel;
+import org.mozilla.javascript.testutils.Utils;
+
+/**
+ * Scripts compiled with a code cache should behave the same whether they were compiled or loaded
+ * from the cache. Each test uses a new factory, and so a new cache object, for every run, just as
+ * a new JVM would.
+ */
+public class CodeCacheTest {
+
+    private static final String SCRIPT =
+            Utils.lines(
+                    "function counter() { var n = 0; return function() { return ++n; }; }",
+                    "var c = counter();",
+                    "c(); c();",
+                    "var m = /b+/.exec('abbbc')[0];",
+                    "var t = `${m}-${c()}`;",
+                    "function* gen() { yield 1; yield 2; }",
+                    "var g = 0;",
+                    "for (var v of gen()) { g += v; }",
+                    "t + ',' + g + ',' + [3, 1, 2].sort().map(x => x * 2).join('');");
+
+    private static Path createDirectory() throws IOException {
+        return Files.createTempDirectory("rhino-code-cache");
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static Path[] entries(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.toArray(Path[]::new);
+        }
+    }
+
+    private static Object runScript(CodeCache cache, int languageVersion, String source) {
+        return runScript(cache, EvaluationMethod.Compiler, languageVersion, source);
+    }
+
+    private static Object runScript(
+            CodeCache cache, EvaluationMethod method, int languageVersion, String source) {
+        ContextFactory factory = new ContextFactory();
+        factory.initCodeCache(cache);
+        return factory.call(
+                cx -> {
+                    cx.setEvaluationMethod(method);
+                    cx.setLanguageVersion(languageVersion);
+                    TopLevel scope = cx.initStandardObjects();
+                    Script script = cx.compileString(source, "cached.js", 1, null);
+                    return Context.toString(script.exec(cx, scope, scope.getGlobalThis()));
+                });
+    }
+
+    @Test
+    public void secondCompileIsLoadedFromCache() throws IOException {
+        Path dir = createDirectory();
+        try {
+            CodeCache first = new CodeCache(dir);
+            assertEquals("bbb-3,3,246", runScript(first, Context.VERSION_ES6, SCRIPT));
+            assertEquals(0, first.getHitCount());
+            assertEquals(1, first.getMissCount());
+            assertEquals(1, entries(dir).length);
+
+            CodeCache second = new CodeCache(dir);
+            assertEquals("bbb-3,3,246", runScript(second, Context.VERSION_ES6, SCRIPT));
+            assertEquals(1, second.getHitCount());
+            assertEquals(0, second.getMissCount());
+            assertEquals(0, second.getWriteFailureCount());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void differentSourceOrOptionsMiss() throws IOException {
+        Path dir = createDirectory();
+        try {
+            runScript(new CodeCache(dir), Context.VERSION_ES6, SCRIPT);
+
+            CodeCache cache = new CodeCache(dir);
+            assertEquals("bbb-3,3,246", runScript(cache, Context.VERSION_ECMASCRIPT, SCRIPT));
+            assertEquals("3", runScript(cache, Context.VERSION_ES6, "1 + 2"));
+            assertEquals(0, cache.getHitCount());
+            assertEquals(2, cache.getMissCount());
+            assertEquals(3, entries(dir).length);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void corruptEntryIsReplaced() throws IOException {
+        Path dir = createDirectory();
+        try {
+            runScript(new CodeCache(dir), Context.VERSION_ES6, SCRIPT);
+            Path entry = entries(dir)[0];
+            byte[] data = Files.readAllBytes(entry);
+            data[data.length / 2] ^= 0x55;
+            Files.write(entry, data);
+
+            CodeCache cache = new CodeCache(dir);
+            assertEquals("bbb-3,3,246", runScript(cache, Context.VERSION_ES6, SCRIPT));
+            assertEquals(1, cache.getCorruptCount());
+            assertEquals(1, cache.getMissCount());
+
+            Files.write(entry, new byte[] {1, 2, 3});
+            assertEquals("bbb-3,3,246", runScript(cache, Context.VERSION_ES6, SCRIPT));
+            assertEquals(2, cache.getCorruptCount());
+
+            CodeCache repaired = new CodeCache(dir);
+            assertEquals("bbb-3,3,246", runScript(repaired, Context.VERSION_ES6, SCRIPT));
+            assertEquals(1, repaired.getHitCount());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void interpretedScriptIsLoadedFromCache() throws IOException {
+        String source =
+                SCRIPT
+                        + Utils.lines(
+                                "var r = (function() {",
+                                "  var {x, ...rest} = {x: 1, y: 2};",
+                                "  return rest.y;",
+                                "})();",
+                                "var o = JSON.stringify({a: 1, 2: 'b', ['c' + 1]: 3});",
+                                "var s = '" + "y".repeat(30000) + "' + 0.5;",
+                                "[t, g, 10n ** 20n, o, [1, , 3].length, r, s.length].join(';');");
+        String expected =
+                "bbb-3;3;100000000000000000000;{\"2\":\"b\",\"a\":1,\"c1\":3};3;2;30003";
+        Path dir = createDirectory();
+        try {
+            CodeCache first = new CodeCache(dir);
+            assertEquals(
+                    expected,
+                    runScript(first, EvaluationMethod.Interpreter, Context.VERSION_ES6, source));
+            assertEquals(1, first.getMissCount());
+
+            CodeCache second = new CodeCache(dir);
+            assertEquals(
+                    expected,
+                    runScript(second, EvaluationMethod.Interpreter, Context.VERSION_ES6, source));
+            assertEquals(1, second.getHitCount());
+            assertEquals(0, second.getCorruptCount());
+
+            // The compiler has its own entries
+            CodeCache compiled = new CodeCache(dir);
+            assertEquals(
+                    expected,
+                    runScript(compiled, EvaluationMethod.Compiler, Context.VERSION_ES6, source));
+            assertEquals(0, compiled.getHitCount());
+            assertEquals(2, entries(dir).length);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void compiledFunction() throws IOException {
+        Path dir = createDirectory();
+        try {
+            for (int i = 0; i < 2; i++) {
+                CodeCache cache = new CodeCache(dir);
+                ContextFactory factory = new ContextFactory();
+                factory.initCodeCache(cache);
+                Object r =
+                        factory.call(
+                                cx -> {
+                                    cx.setEvaluationMethod(EvaluationMethod.Compiler);
+                                    TopLevel scope = cx.initStandardObjects();
+                                    Function fn =
+                                            cx.compileFunction(
+                                                    scope,
+                                                    "function twice(x) { return x * 2; }",
+                                                    "twice.js",
+                                                    1,
+                                                    null);
+                                    return fn.call(
+                                            cx, scope, scope.getGlobalThis(), new Object[] {21});
+                                });
+                assertEquals(42.0, ((Number) r).doubleValue());
+                assertEquals(i, cache.getHitCount());
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+}
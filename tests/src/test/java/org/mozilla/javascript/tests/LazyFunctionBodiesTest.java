@@ -0,0 +1,196 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import org.junit.jupiter.api.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.JSFunction;
+import org.mozilla.javascript.LazyFunctionCode;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.TopLevel;
+import org.mozilla.javascript.testutils.Utils;
+
+/**
+ * With lazy function bodies the code of a nested function is only generated when it is first
+ * called. These tests make sure that functions behave the same either way, and that the code is
+ * generated at the right time.
+ */
+public class LazyFunctionBodiesTest {
+
+    private interface LazyAction {
+        void run(Context cx, TopLevel scope);
+    }
+
+    private static void withLazyBodies(LazyAction action) {
+        Utils.runWithAllModes(
+                cx -> {
+                    cx.setLanguageVersion(Context.VERSION_ES6);
+                    TopLevel scope = cx.initStandardObjects();
+                    action.run(cx, scope);
+                    return null;
+                });
+    }
+
+    private static Object run(TopLevel scope, Context cx, String source) {
+        Script script;
+        try {
+            script =
+                    cx.compileReader(
+                            new StringReader(source),
+                            "test.js",
+                            1,
+                            null,
+                            env -> env.setLazyFunctionBodies(true));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return script.exec(cx, scope, scope.getGlobalThis());
+    }
+
+    private static boolean isLazy(TopLevel scope, String name) {
+        JSFunction fn = (JSFunction) scope.get(name, scope);
+        return fn.getDescriptor().getCode() instanceof LazyFunctionCode;
+    }
+
+    @Test
+    public void bodyIsCompiledOnFirstCall() {
+        withLazyBodies(
+                (cx, scope) -> {
+                    run(scope, cx, "function add(a, b) { return a + b; }\nvar x = 1;");
+                    assertTrue(isLazy(scope, "add"));
+                    assertEquals(5, ((Number) run(scope, cx, "add(2, 3)")).intValue());
+                    assertFalse(isLazy(scope, "add"));
+                    assertEquals(9, ((Number) run(scope, cx, "add(4, 5)")).intValue());
+                });
+    }
+
+    @Test
+    public void closuresSeeEnclosingVariables() {
+        withLazyBodies(
+                (cx, scope) -> {
+                    Object result =
+                            run(
+                                    scope,
+                                    cx,
+                                    "function counter(start) {\n"
+                                            + "  var n = start;\n"
+                                            + "  return function() { return ++n; };\n"
+                                            + "}\n"
+                                            + "var a = counter(10), b = counter(20);\n"
+                                            + "a(); a(); b();\n"
+                                            + "'' + a() + ',' + b();");
+                    assertEquals("13,22", result);
+                });
+    }
+
+    @Test
+    public void functionsFromOneDefinitionShareCode() {
+        withLazyBodies(
+                (cx, scope) -> {
+                    run(
+                            scope,
+                            cx,
+                            "function make() { return function(x) { return x * 2; }; }\n"
+                                    + "var f = make(), g = make();\n"
+                                    + "var r = f(2) + g(3);");
+                    assertEquals(10, ((Number) scope.get("r", scope)).intValue());
+                    JSFunction f = (JSFunction) scope.get("f", scope);
+                    JSFunction g = (JSFunction) scope.get("g", scope);
+                    assertSame(f.getDescriptor(), g.getDescriptor());
+                });
+    }
+
+    @Test
+    public void sourceAndNamesAreKept() {
+        withLazyBodies(
+                (cx, scope) -> {
+                    Object result =
+                            run(
+                                    scope,
+                                    cx,
+                                    "var m = function times(a, b) {\n"
+                                            + "  return b === 0 ? 0 : a + times(a, b - 1);\n"
+                                            + "};\n"
+                                            + "m(3, 4) + ' ' + m.name + ' ' + m.length");
+                    assertEquals("12 times 2", result);
+                    assertEquals(
+                            "function times(a, b) {\n"
+                                    + "  return b === 0 ? 0 : a + times(a, b - 1);\n"
+                                    + "}",
+                            run(scope, cx, "m.toString()"));
+                });
+    }
+
+    @Test
+    public void strictnessIsInherited() {
+        withLazyBodies(
+                (cx, scope) -> {
+                    Object result =
+                            run(
+                                    scope,
+                                    cx,
+                                    "'use strict';\n"
+                                            + "function leak() { undeclared = 1; }\n"
+                                            + "try { leak(); 'none' } catch (e) { e.name }");
+                    assertEquals("ReferenceError", result);
+                });
+    }
+
+    @Test
+    public void constructorsWork() {
+        withLazyBodies(
+                (cx, scope) -> {
+                    Object result =
+                            run(
+                                    scope,
+                                    cx,
+                                    "function Point(x, y) { this.x = x; this.y = y; }\n"
+                                            + "Point.prototype.sum = function() {"
+                                            + " return this.x + this.y; };\n"
+                                            + "new Point(3, 4).sum()");
+                    assertEquals(7, ((Number) result).intValue());
+                });
+    }
+
+    @Test
+    public void stackHasSourceLines() {
+        withLazyBodies(
+                (cx, scope) -> {
+                    Object result =
+                            run(
+                                    scope,
+                                    cx,
+                                    "function thrower() {\n"
+                                            + "  throw new Error('boom');\n"
+                                            + "}\n"
+                                            + "try { thrower(); } catch (e) { e.stack }");
+                    assertTrue(
+                            result.toString().contains("test.js:2 (thrower)"), result.toString());
+                });
+    }
+
+    @Test
+    public void lateErrorIsSyntaxErrorOnCall() {
+        withLazyBodies(
+                (cx, scope) -> {
+                    Object result =
+                            run(
+                                    scope,
+                                    cx,
+                                    "function bad() { var a = 1; for (a + 1 in {}) {} }\n"
+                                            + "var before = 'ran';\n"
+                                            + "try { bad(); } catch (e) { before + ' ' + e.name }");
+                    assertEquals("ran SyntaxError", result);
+                });
+    }
+}
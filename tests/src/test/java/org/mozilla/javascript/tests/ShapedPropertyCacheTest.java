@@ -0,0 +1,123 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import org.junit.jupiter.api.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.testutils.Utils;
+
+/**
+ * Property accesses on objects with shapes may be cached by their call sites. These tests make sure
+ * that the caches notice when the objects that they see change in ways that invalidate them.
+ */
+public class ShapedPropertyCacheTest {
+    private static final ContextFactory FACTORY =
+            Utils.contextFactoryWithFeatures(Context.FEATURE_SHAPED_OBJECTS);
+
+    private static final String POINT =
+            Utils.lines(
+                    "function P(x, y) { this.x = x; this.y = y; }",
+                    "P.prototype.sum = function() { return this.x + this.y; };",
+                    "function getX(o) { return o.x; }",
+                    "function setX(o, v) { o.x = v; return o.x; }",
+                    "function sum(o) { return o.sum(); }",
+                    "var a = new P(1, 2);",
+                    "var b = new P(3, 4);",
+                    "getX(a); getX(b); setX(a, 1); setX(b, 3); sum(a); sum(b);");
+
+    private static void assertWithShapes(Object expected, String script) {
+        Utils.assertWithAllModes(FACTORY, Context.VERSION_ES6, null, expected, POINT + script);
+    }
+
+    @Test
+    public void ownProperties() {
+        assertWithShapes("1,3,10", "[getX(a), getX(b), setX(b, 10)].join()");
+    }
+
+    @Test
+    public void polymorphicSite() {
+        assertWithShapes(
+                "1,3,5,7,",
+                "[getX(a), getX(b), getX({x: 5}), getX({y: 1, x: 7}), getX({})].join()");
+    }
+
+    @Test
+    public void megamorphicSite() {
+        assertWithShapes(
+                "90",
+                Utils.lines(
+                        "var s = 0;",
+                        "for (var i = 0; i < 20; i++) {",
+                        "  var o = {};",
+                        "  o['p' + (i % 10)] = 0;",
+                        "  o.x = i % 10;",
+                        "  s += getX(o);",
+                        "}",
+                        "s"));
+    }
+
+    @Test
+    public void prototypeProperties() {
+        assertWithShapes("3,7", "[sum(a), sum(b)].join()");
+    }
+
+    @Test
+    public void prototypeChanged() {
+        assertWithShapes(
+                "-1,-1,0",
+                Utils.lines(
+                        "var r = [];",
+                        "P.prototype.sum = function() { return -1; };",
+                        "r.push(sum(a));",
+                        "P.prototype.other = 1;",
+                        "r.push(sum(b));",
+                        "Object.setPrototypeOf(a, { sum: function() { return 0; } });",
+                        "r.push(sum(a));",
+                        "r.join()"));
+    }
+
+    @Test
+    public void propertyShadowsPrototype() {
+        assertWithShapes("10,7", "a.sum = function() { return 10; }; [sum(a), sum(b)].join()");
+    }
+
+    @Test
+    public void propertyDeleted() {
+        assertWithShapes(",NaN", "delete a.x; [getX(a), sum(a)].join()");
+    }
+
+    @Test
+    public void getterDefined() {
+        assertWithShapes(
+                "100,102,100",
+                Utils.lines(
+                        "Object.defineProperty(a, 'x', { get: function() { return 100; },",
+                        "  set: function(v) {} });",
+                        "[getX(a), sum(a), setX(a, 5)].join()"));
+    }
+
+    @Test
+    public void readOnlyProperty() {
+        assertWithShapes(
+                "1,5",
+                Utils.lines(
+                        "Object.defineProperty(a, 'x', { writable: false });",
+                        "[setX(a, 5), setX(b, 5)].join()"));
+    }
+
+    @Test
+    public void frozenObject() {
+        assertWithShapes(
+                "1,TypeError",
+                Utils.lines(
+                        "Object.freeze(a);",
+                        "var r = [setX(a, 5)];",
+                        "try {",
+                        "  (function(o) { 'use strict'; o.x = 5; })(a);",
+                        "} catch (e) { r.push(e.name); }",
+                        "r.join()"));
+    }
+}
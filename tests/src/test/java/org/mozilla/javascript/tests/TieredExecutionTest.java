@@ -0,0 +1,297 @@
+/* This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.javascript.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.mozilla.javascript.CompilationStats;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+import org.mozilla.javascript.Context.EvaluationMethod;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.JSFunction;
+import org.mozilla.javascript.LambdaFunction;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.TopLevel;
+import org.mozilla.javascript.optimizer.MHJSCode;
+import org.mozilla.javascript.optimizer.OptJSCode;
+import org.mozilla.javascript.testutils.Utils;
+
+/**
+ * In tiered mode functions start in the interpreter and are compiled once they get hot. These tests
+ * make sure that results are the same either side of the switch, and that the switch happens.
+ */
+public class TieredExecutionTest {
+
+    private static Object run(TopLevel scope, Context cx, String script) {
+        return cx.evaluateString(scope, script, "test.js", 1, null);
+    }
+
+    private static boolean isCompiled(TopLevel scope, String name) {
+        return isCompiled((JSFunction) scope.get(name, scope));
+    }
+
+    private static boolean isCompiled(JSFunction fn) {
+        var code = fn.getDescriptor().getCode();
+        return code instanceof MHJSCode || code instanceof OptJSCode;
+    }
+
+    private static boolean isRunningCompiledCode() {
+        for (StackTraceElement e : Thread.currentThread().getStackTrace()) {
+            if (e.getClassName().startsWith("org.mozilla.javascript.gen.")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private interface TieredAction {
+        void run(Context cx, TopLevel scope);
+    }
+
+    private static void withTiered(TieredAction action) {
+        withTiered(new ContextFactory(), action);
+    }
+
+    private static void withTiered(ContextFactory factory, TieredAction action) {
+        Utils.runWithMode(
+                factory,
+                cx -> {
+                    cx.setLanguageVersion(Context.VERSION_ES6);
+                    TopLevel scope = cx.initStandardObjects();
+                    action.run(cx, scope);
+                    return null;
+                },
+                EvaluationMethod.Tiered);
+    }
+
+    @Test
+    public void hotFunctionIsCompiled() {
+        withTiered(
+                (cx, scope) -> {
+                    run(
+                            scope,
+                            cx,
+                            Utils.lines(
+                                    "function hot(x) { return x + 1; }",
+                                    "function cold(x) { return x - 1; }",
+                                    "var s = 0;",
+                                    "for (var i = 0; i < 2000; i++) { s = hot(s); }",
+                                    "cold(s);"));
+                    assertTrue(isCompiled(scope, "hot"));
+                    assertFalse(isCompiled(scope, "cold"));
+                    assertEquals(2000.0, ((Number) run(scope, cx, "s")).doubleValue());
+                });
+    }
+
+    @Test
+    public void hotLoopIsCompiled() {
+        withTiered(
+                (cx, scope) -> {
+                    Object r =
+                            run(
+                                    scope,
+                                    cx,
+                                    Utils.lines(
+                                            "function loop(n) {",
+                                            "  var s = 0;",
+                                            "  for (var i = 0; i < n; i++) { s += i; }",
+                                            "  return s;",
+                                            "}",
+                                            "loop(5000) + ',' + loop(10);"));
+                    assertEquals("12497500,45", r);
+                    assertTrue(isCompiled(scope, "loop"));
+                });
+    }
+
+    @Test
+    public void closuresAndConstructors() {
+        withTiered(
+                (cx, scope) -> {
+                    Object r =
+                            run(
+                                    scope,
+                                    cx,
+                                    Utils.lines(
+                                            "function P(x) { this.x = x; }",
+                                            "P.prototype.get = function() { return this.x; };",
+                                            "function counter() {",
+                                            "  var n = 0;",
+                                            "  return function() { return ++n; };",
+                                            "}",
+                                            "var c = counter();",
+                                            "var s = 0;",
+                                            "for (var i = 0; i < 3000; i++) {",
+                                            "  var p = new P(i);",
+                                            "  if (!(p instanceof P)) throw 'bad';",
+                                            "  s += p.get();",
+                                            "  c();",
+                                            "}",
+                                            "s + ',' + c();"));
+                    assertEquals("4498500,3001", r);
+                    assertTrue(isCompiled(scope, "P"));
+                });
+    }
+
+    @Test
+    public void hotScriptLoopIsCompiled() {
+        withTiered(
+                (cx, scope) -> {
+                    ScriptableObject.putProperty(
+                            scope,
+                            "isCompiled",
+                            new LambdaFunction(
+                                    scope,
+                                    "isCompiled",
+                                    0,
+                                    (lcx, lscope, thisObj, args) -> isRunningCompiledCode()));
+                    Object r =
+                            run(
+                                    scope,
+                                    cx,
+                                    Utils.lines(
+                                            "var s = 0, first, last;",
+                                            "for (var i = 0; i < 5000; i++) {",
+                                            "  if (i == 0) first = isCompiled();",
+                                            "  s += i;",
+                                            "  last = isCompiled();",
+                                            "}",
+                                            "first + ',' + last + ',' + s;"));
+                    assertEquals("false,true,12497500", r);
+                });
+    }
+
+    @Test
+    public void scriptLoopsKeepCompletionValue() {
+        withTiered(
+                (cx, scope) -> {
+                    Object r =
+                            run(
+                                    scope,
+                                    cx,
+                                    Utils.lines(
+                                            "var n = 0;",
+                                            "while (n < 3000) { n++; 'step ' + n; }"));
+                    assertEquals("step 3000", r);
+
+                    r =
+                            run(
+                                    scope,
+                                    cx,
+                                    Utils.lines(
+                                            "var s = 0, k = 0;",
+                                            "outer: for (var i = 0; i < 100; i++) {",
+                                            "  var j = 0;",
+                                            "  do {",
+                                            "    if (i * j == 2000) break outer;",
+                                            "    s += j;",
+                                            "  } while (++j < 50);",
+                                            "  try { k++; } finally { k++; }",
+                                            "}",
+                                            "s + ',' + i + ',' + j + ',' + k;"));
+                    assertEquals("62030,50,40,100", r);
+                });
+    }
+
+    @Test
+    public void generatorsStayInterpreted() {
+        withTiered(
+                (cx, scope) -> {
+                    Object r =
+                            run(
+                                    scope,
+                                    cx,
+                                    Utils.lines(
+                                            "function* gen(n) { yield n; yield n + 1; }",
+                                            "var s = 0;",
+                                            "for (var i = 0; i < 2000; i++) {",
+                                            "  for (var v of gen(i)) { s += v; }",
+                                            "}",
+                                            "s;"));
+                    assertEquals(4000000.0, ((Number) r).doubleValue());
+                    assertFalse(isCompiled(scope, "gen"));
+                });
+    }
+
+    @Test
+    public void compiledFunction() {
+        withTiered(
+                (cx, scope) -> {
+                    Function fn =
+                            cx.compileFunction(
+                                    scope,
+                                    "function twice(x) { return x * 2; }",
+                                    "test.js",
+                                    1,
+                                    null);
+                    Object r = null;
+                    for (int i = 0; i < 2000; i++) {
+                        r = fn.call(cx, scope, scope.getGlobalThis(), new Object[] {i});
+                    }
+                    assertEquals(3998.0, ((Number) r).doubleValue());
+                    assertTrue(isCompiled((JSFunction) fn));
+                });
+    }
+
+    @Test
+    public void backgroundCompilation() throws InterruptedException {
+        ContextFactory factory = new ContextFactory();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        factory.initCompilationExecutor(executor);
+        CompilationStats stats = factory.getCompilationStats();
+
+        // Keep the executor busy so that the compilation job has to wait in the queue
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(
+                () -> {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+
+        withTiered(
+                factory,
+                (cx, scope) -> {
+                    Object r =
+                            run(
+                                    scope,
+                                    cx,
+                                    Utils.lines(
+                                            "function hot(x) { return x + 1; }",
+                                            "var s = 0;",
+                                            "for (var i = 0; i < 2000; i++) { s = hot(s); }",
+                                            "s;"));
+                    assertEquals(2000.0, ((Number) r).doubleValue());
+                    assertFalse(isCompiled(scope, "hot"));
+                    assertEquals(1, stats.getQueueDepth());
+
+                    latch.countDown();
+                    executor.shutdown();
+                    try {
+                        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw new AssertionError(e);
+                    }
+
+                    assertTrue(isCompiled(scope, "hot"));
+                    assertEquals(2001.0, ((Number) run(scope, cx, "hot(s)")).doubleValue());
+                });
+
+        assertEquals(0, stats.getQueueDepth());
+        assertEquals(1, stats.getCompileCount());
+        assertEquals(0, stats.getFailureCount());
+        assertEquals(1, stats.getInstallCount());
+        assertTrue(stats.getCompileTimeNanos() > 0);
+    }
+}
@@ -0,0 +1,110 @@
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+
+load("testsrc/assert.js");
+
+// Variables of enclosing functions are read and written by their position
+// in the activation when nothing can come between, and by name otherwise.
+
+function counter() {
+  var n = 0;
+  return {
+    next: function() { return ++n; },
+    add: function(k) { n += k; return n; },
+    post: function() { return n--; },
+    get: function() { return n; }
+  };
+}
+var c = counter();
+c.next(); c.next();
+assertEquals(12, c.add(10));
+assertEquals(12, c.post());
+assertEquals(11, c.get());
+var c2 = counter();
+assertEquals(1, c2.next());
+assertEquals(11, c.get());
+
+function nested(a) {
+  var b = a * 2;
+  return function(x) {
+    var y = x + 1;
+    return function() {
+      a++;
+      return [a, b, x, y].join();
+    };
+  };
+}
+var inner = nested(1)(5);
+assertEquals("2,2,5,6", inner());
+assertEquals("3,2,5,6", inner());
+
+// eval can declare a variable that hides the outer one
+function evalShadow() {
+  var v = "outer";
+  return function(code) {
+    eval(code);
+    return (function() { return v; })();
+  };
+}
+assertEquals("outer", evalShadow()(""));
+assertEquals("inner", evalShadow()("var v = 'inner'"));
+
+// with, catch and let blocks add scopes of their own
+function blocks(o) {
+  var x = "var";
+  var fns = [];
+  with (o) { fns.push(function() { return x; }); }
+  try { throw "caught"; } catch (x) { fns.push(function() { return x; }); }
+  {
+    let x = "let";
+    fns.push(function() { return x; });
+  }
+  fns.push(function() { return x; });
+  return fns.map(function(f) { return f(); }).join();
+}
+assertEquals("with,caught,let,var", blocks({x: "with"}));
+assertEquals("var,caught,let,var", blocks({}));
+
+// arguments stays in step with the parameters
+function aliased(a) {
+  var get = function() { return a; };
+  var set = function(v) { a = v; };
+  arguments[0] = "arg";
+  var first = get();
+  set("set");
+  return first + "," + arguments[0];
+}
+assertEquals("arg,set", aliased("a"));
+
+function duplicates(a, a) {
+  return function() { return a; };
+}
+assertEquals(2, duplicates(1, 2)());
+
+var named = function self(n) {
+  return function() { return typeof self + n; };
+};
+assertEquals("function3", named(3)());
+
+function declared() {
+  return function() { return helper(); };
+  function helper() { return "helper"; }
+}
+assertEquals("helper", declared()());
+
+function consts() {
+  const k = 1;
+  return function() { return k; };
+}
+assertEquals(1, consts()());
+
+function strict() {
+  "use strict";
+  var s = 0;
+  [1, 2, 3].forEach(function(v) { s += v; });
+  return s;
+}
+assertEquals(6, strict());
+
+"success";
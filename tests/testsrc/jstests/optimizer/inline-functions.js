@@ -0,0 +1,78 @@
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+
+load("testsrc/assert.js");
+
+// Calls from one function to another small one are replaced by the
+// expression that the small function returns, as long as the name still
+// refers to the same function.
+
+function square(x) { return x * x; }
+function add(a, b) { return a + b; }
+function max(a, b) { return a > b ? a : b; }
+function isEven(n) { return n % 2 === 0; }
+function getX(o) { return o.x; }
+function kind(v) { return typeof v; }
+
+function sumSquares(n) {
+  var s = 0;
+  for (var i = 0; i < n; i++) { s = add(s, square(i)); }
+  return s;
+}
+assertEquals(328350, sumSquares(100));
+
+function mixed() {
+  return [square("3"), add("a", 1), add(1, 2), max(3, 7), max("b", "a"),
+          isEven(4), isEven(5), kind(1), kind("s"), kind(null)].join();
+}
+assertEquals("9,a1,3,7,b,true,false,number,string,object", mixed());
+
+function nested(a, b) {
+  return add(add(a, 1), add(square(b), max(a, b)));
+}
+function callNested() {
+  return nested(2, 3) + "," + nested("x", 1);
+}
+assertEquals("15,x12", callNested());
+
+// Getters still run, and errors still get thrown
+function getters() {
+  var count = 0;
+  var o = { get x() { count++; return count * 10; } };
+  var s = 0;
+  for (var i = 0; i < 5; i++) { s += getX(o); }
+  var caught = false;
+  try {
+    getX(null);
+  } catch (e) {
+    caught = e instanceof TypeError;
+  }
+  return s + "," + count + "," + caught;
+}
+assertEquals("150,5,true", getters());
+
+// Arguments are evaluated once, in order, after the function is found
+function order() {
+  var log = [];
+  function arg(v) { log.push(v); return v; }
+  var r = add(arg(1), arg(2));
+  return r + ":" + log.join();
+}
+assertEquals("3:1,2", order());
+
+// Once the name refers to something else, that gets called instead
+function twice(x) { return x * 2; }
+function callTwice(n) {
+  var s = [];
+  for (var i = 0; i < n; i++) {
+    if (i == 2) {
+      twice = function(x) { return x * 3; };
+    }
+    s.push(twice(i));
+  }
+  return s.join();
+}
+assertEquals("0,2,6,9", callTwice(4));
+
+"success";
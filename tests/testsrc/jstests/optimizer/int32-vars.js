@@ -0,0 +1,138 @@
+// This Source Code Form is subject to the terms of the Mozilla Public
+// License, v. 2.0. If a copy of the MPL was not distributed with this
+// file, You can obtain one at http://mozilla.org/MPL/2.0/.
+
+load("testsrc/assert.js");
+
+// Number variables that only hold int32 values are kept in int registers by
+// the compiler, which falls back to doubles when an operation overflows or
+// produces -0.
+
+function sum(n) {
+  var s = 0;
+  for (var i = 0; i < n; i++) { s = s + i; }
+  return s;
+}
+assertEquals(4950, sum(100));
+assertEquals(4999950000, sum(100000));
+
+function countUp() {
+  var x = 2147483000;
+  for (var i = 0; i < 1000; i++) { x = x + 1; }
+  return x;
+}
+assertEquals(2147484000, countUp());
+
+function incPast(start, n) {
+  var i = 0;
+  i = start | 0;
+  while (n-- > 0) { i++; }
+  return i;
+}
+assertEquals(2147483649, incPast(2147483646, 3));
+
+function decPast() {
+  var i = -2147483647;
+  i--; i--; i--;
+  return i;
+}
+assertEquals(-2147483650, decPast());
+
+function power() {
+  var x = 1;
+  for (var i = 0; i < 40; i++) { x = x * 3; }
+  return x;
+}
+assertEquals(Math.pow(3, 40), power());
+
+function negateZero() {
+  var z = 0;
+  var r = 0;
+  r = -z;
+  return r;
+}
+assertEquals(-Infinity, 1 / negateZero());
+
+function multiplyToZero(a) {
+  var x = 0;
+  var c = 0;
+  x = a | 0;
+  c = x * 0;
+  return c;
+}
+assertEquals(Infinity, 1 / multiplyToZero(5));
+assertEquals(-Infinity, 1 / multiplyToZero(-5));
+
+function remainder(a, b) {
+  var x = 0, y = 0, c = 0;
+  x = a | 0;
+  y = b | 0;
+  c = x % y;
+  return c;
+}
+assertEquals(-1, remainder(-7, 2));
+assertEquals(-Infinity, 1 / remainder(-4, 2));
+assertEquals(NaN, remainder(4, 0));
+assertEquals(-Infinity, 1 / remainder(-2147483648, -1));
+
+// Inside a bitwise operator, sums wrap around instead of overflowing
+function hash(s) {
+  var h = 0;
+  for (var i = 0; i < s.length; i++) { h = (h * 31 + s.charCodeAt(i)) | 0; }
+  return h;
+}
+assertEquals(-1830212422, hash("int32 speculation in the optimizer"));
+
+function wrap() {
+  var h = 0;
+  for (var i = 0; i < 1000; i++) { h = (h + 2000000000) | 0; }
+  return h;
+}
+assertEquals(-1454759936, wrap());
+
+function bits() {
+  var x = 0;
+  var i = 0;
+  for (i = 0; i < 50; i++) { x = (x << 3) ^ (i >> 1) ^ ~i; }
+  return x;
+}
+assertEquals(488291502, bits());
+
+function mixed(a) {
+  var s = 0;
+  for (var i = 0; i < a.length; i++) { s = (s + a[i]) | 0; }
+  return s;
+}
+assertEquals(-2147483639, mixed([1, 2, 3, 4.5, 2147483647]));
+
+function compare() {
+  var i = 0, c = 0;
+  for (i = -5; i <= 5; i++) {
+    if (i > 0) c++;
+    if (i >= 0) c++;
+    if (i < -2) c++;
+  }
+  return c;
+}
+assertEquals(14, compare());
+
+function nested() {
+  var i = 0, j = 0;
+  j = (i = 5 | 0) * 2.5;
+  return typeof i + i + "," + j;
+}
+assertEquals("number5,12.5", nested());
+
+function labels() {
+  var i = 0, k = 0;
+  outer: for (i = 0; i < 10; i++) {
+    for (var j = 0; j < 10; j++) {
+      if (j == 5) continue outer;
+      k = k + 2147483647;
+    }
+  }
+  return k;
+}
+assertEquals(107374182350, labels());
+
+"success";